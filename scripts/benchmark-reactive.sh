@@ -0,0 +1,35 @@
+#!/usr/bin/env bash
+# Сравнивает блокирующие MVC-эндпоинты чтения с реактивными (/reactive/**) при высокой конкурентности:
+# для каждой пары URL поочередно запускает HttpLoadTest с одинаковым числом клиентов и длительностью.
+#
+# Приложение должно быть запущено (по умолчанию на localhost:8080) и содержать данные.
+# Использование: scripts/benchmark-reactive.sh [базовый URL]
+# Переменные: CLIENTS (по умолчанию "200 1000"), SECONDS_PER_RUN (по умолчанию 30).
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+BASE=${1:-http://localhost:8080}
+CLIENTS=${CLIENTS:-"200 1000"}
+SECONDS_PER_RUN=${SECONDS_PER_RUN:-30}
+
+# Строки "название [-HЗаголовок=значение] URL": короткая и максимальная (CursorPageDTO.MAX_SIZE) страница книг.
+# Реактивная страница замеряется в двух видах: потоком NDJSON (запись и flush на каждую книгу)
+# и одним JSON-массивом (Accept: application/json).
+TARGETS=(
+    "mvc-50            $BASE/books?size=50"
+    "reactive-50       $BASE/reactive/books?limit=50"
+    "reactive-json-50  -HAccept=application/json $BASE/reactive/books?limit=50"
+    "mvc-500           $BASE/books?size=500"
+    "reactive-500      $BASE/reactive/books?limit=500"
+    "reactive-json-500 -HAccept=application/json $BASE/reactive/books?limit=500"
+)
+
+./mvnw -q -B -P jmh test-compile >/dev/null
+
+for clients in $CLIENTS; do
+    for target in "${TARGETS[@]}"; do
+        read -r name request <<<"$target"
+        result=$(./mvnw -q -B -P jmh exec:exec@load -Dload.args="$clients $SECONDS_PER_RUN $request" | tail -n 1)
+        printf '%-18s clients=%-5d %s\n' "$name" "$clients" "$result"
+    done
+done
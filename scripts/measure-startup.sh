@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Измеряет время запуска приложения в разных режимах: время до "Started DemoApplication"
+# и время от старта процесса до первого успешного ответа GET /books (с ленивой инициализацией
+# часть работы переносится на первый запрос, поэтому важны обе цифры).
+#
+# Нужна доступная база из application.properties (или параметры подключения в аргументах).
+# Использование: scripts/measure-startup.sh [аргументы приложения, например --spring.datasource.url=...]
+# Переменные: RUNS (по умолчанию 3), PORT (по умолчанию 18080).
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+RUNS=${RUNS:-3}
+PORT=${PORT:-18080}
+OUT=target/startup
+APP_ARGS=(--server.port="$PORT" "$@")
+
+./mvnw -q -B -P aot package -DskipTests >target/startup-build.log
+JAR=$(ls target/demo-*.jar | grep -v plain | head -n 1)
+
+# Распакованный jar: CDS-архив работает только с ним.
+rm -rf "$OUT"
+java -Djarmode=tools -jar "$JAR" extract --destination "$OUT" >/dev/null
+APP="$OUT/$(basename "$JAR")"
+
+# Обучающие запуски: классы, загруженные до конца refresh, сохраняются в архивы.
+java -XX:ArchiveClassesAtExit="$OUT/prod.jsa" -Dspring.context.exit=onRefresh \
+    -jar "$APP" --spring.profiles.active=prod "${APP_ARGS[@]}" >/dev/null
+java -XX:ArchiveClassesAtExit="$OUT/prod-aot.jsa" -Dspring.aot.enabled=true -Dspring.context.exit=onRefresh \
+    -jar "$APP" --spring.profiles.active=prod "${APP_ARGS[@]}" >/dev/null
+
+measure() {
+    local name=$1
+    shift
+    for run in $(seq 1 "$RUNS"); do
+        local log="$OUT/$name-$run.log"
+        local start
+        start=$(date +%s%N)
+        java "$@" "${APP_ARGS[@]}" >"$log" 2>&1 &
+        local pid=$!
+        until curl -sf -o /dev/null "http://localhost:$PORT/books?size=1"; do
+            if ! kill -0 "$pid" 2>/dev/null; then
+                echo "$name: application exited, see $log" >&2
+                exit 1
+            fi
+            sleep 0.05
+        done
+        local first_response_ms=$(( ($(date +%s%N) - start) / 1000000 ))
+        local started
+        started=$(grep -o 'Started DemoApplication in [0-9.]* seconds' "$log" | grep -o '[0-9.]*' | head -n 1)
+        printf '%-14s run %d: started in %ss, first response after %dms\n' "$name" "$run" "$started" "$first_response_ms"
+        kill "$pid"
+        wait "$pid" 2>/dev/null || true
+    done
+}
+
+measure default      -jar "$APP"
+measure prod         -jar "$APP" --spring.profiles.active=prod
+measure prod-cds     -XX:SharedArchiveFile="$OUT/prod.jsa" -jar "$APP" --spring.profiles.active=prod
+measure prod-aot-cds -XX:SharedArchiveFile="$OUT/prod-aot.jsa" -Dspring.aot.enabled=true \
+    -jar "$APP" --spring.profiles.active=prod
@@ -0,0 +1,75 @@
+package com.example.demo.DTO;
+
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+    private static final int BOOKS_PER_USER = 5;
+
+    @Param({"50", "500"})
+    int size;
+
+    ObjectMapper objectMapper;
+    List<UserDTO> users;
+    List<Book> books;
+
+    @Setup
+    public void createPayload() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        users = new ArrayList<>(size);
+        books = new ArrayList<>(size);
+        for (long i = 0; i < size; i++) {
+            User owner = new User();
+            owner.setId(i);
+            owner.setName("user" + i);
+            owner.setEmail("user" + i + "@example.com");
+
+            List<BookDTO> userBooks = new ArrayList<>(BOOKS_PER_USER);
+            for (long j = 0; j < BOOKS_PER_USER; j++) {
+                userBooks.add(new BookDTO(i * BOOKS_PER_USER + j, "title" + j, "author" + j));
+            }
+            users.add(new UserDTO(i, owner.getName(), owner.getEmail(), userBooks));
+
+            Book book = new Book();
+            book.setId(i);
+            book.setTittle("title" + i);
+            book.setAuthor("author" + i);
+            book.setUser(owner);
+            books.add(book);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeUsers() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] serializeBooks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Простой нагрузочный тест запущенного приложения: N клиентов в цикле выполняют GET
+ * на заданные URL в течение заданного времени и выводят пропускную способность и перцентили задержки.
+ * <p>
+ * Запуск: ./mvnw -P jmh test-compile exec:exec@load -Dload.args="200 30 http://localhost:8080/books?size=50"
+ * (аргументы: число клиентов, длительность в секундах, один или несколько URL).
+ * Заголовки запросов задаются аргументами вида -HName=value перед URL, например -HAccept=application/json.
+ */
+public class HttpLoadTest {
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: HttpLoadTest <clients> <seconds> [-HName=value...] <url> [<url>...]");
+            System.exit(1);
+        }
+        int clients = Integer.parseInt(args[0]);
+        Duration duration = Duration.ofSeconds(Long.parseLong(args[1]));
+        List<String> headers = Arrays.stream(args, 2, args.length)
+                .filter(arg -> arg.startsWith("-H"))
+                .flatMap(arg -> Arrays.stream(arg.substring(2).split("=", 2)))
+                .toList();
+        List<HttpRequest> requests = Arrays.stream(args, 2, args.length)
+                .filter(arg -> !arg.startsWith("-H"))
+                .map(url -> {
+                    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30)).GET();
+                    return headers.isEmpty() ? request.build() : request.headers(headers.toArray(String[]::new)).build();
+                })
+                .toList();
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+
+        System.out.printf("Warming up for %d s...%n", WARMUP.toSeconds());
+        run(client, requests, clients, WARMUP);
+        System.out.printf("Measuring %d clients for %d s...%n", clients, duration.toSeconds());
+        Result result = run(client, requests, clients, duration);
+        System.out.println(result);
+        System.exit(0);
+    }
+
+    private static Result run(HttpClient client, List<HttpRequest> requests, int clients, Duration duration)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[]>> futures = new ArrayList<>(clients);
+        long[] errors = new long[clients];
+        for (int i = 0; i < clients; i++) {
+            int clientIndex = i;
+            futures.add(executor.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                int next = clientIndex;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = requests.get(next++ % requests.size());
+                    long started = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors[clientIndex]++;
+                        }
+                    } catch (Exception e) {
+                        errors[clientIndex]++;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - started;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        List<long[]> perClient = new ArrayList<>(clients);
+        for (Future<long[]> future : futures) {
+            perClient.add(future.get());
+        }
+        executor.shutdown();
+
+        long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all, Arrays.stream(errors).sum(), duration);
+    }
+
+    private record Result(long[] sortedLatencies, long errors, Duration duration) {
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d throughput=%.1f req/s p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                    sortedLatencies.length, errors, sortedLatencies.length / (double) duration.toSeconds(),
+                    percentileMillis(50), percentileMillis(99), percentileMillis(100));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.services;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Контекст приложения на встроенной H2 с заранее загруженным каталогом,
+ * общий для всех итераций бенчмарков сервисов.
+ * <p>
+ * Параметр cached включает кэши чтения (Spring Cache и кэш второго уровня Hibernate). Без кэшей
+ * чтения по ID доходят до базы; с кэшами после прогрева почти каждое чтение попадает в кэш,
+ * поэтому сравнивать запросы нужно при одинаковом значении параметра.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+    static final int USERS = 1_000;
+    static final int BOOKS_PER_USER = 5;
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    ConfigurableApplicationContext context;
+    BookService bookService;
+    UserService userService;
+    long[] userIds;
+    long[] bookIds;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        SpringApplication application = new SpringApplication(DemoApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        context = application.run(
+                "--spring.datasource.url=jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--spring.cache.type=" + (cached ? "caffeine" : "none"),
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=" + cached,
+                "--logging.level.root=WARN");
+        bookService = context.getBean(BookService.class);
+        userService = context.getBean(UserService.class);
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        BookRepository bookRepository = context.getBean(BookRepository.class);
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setName("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        List<Book> books = new ArrayList<>(USERS * BOOKS_PER_USER);
+        for (User user : users) {
+            for (int j = 0; j < BOOKS_PER_USER; j++) {
+                Book book = new Book();
+                book.setTittle("title-" + user.getId() + "-" + j);
+                book.setAuthor("author" + j);
+                book.setUser(user);
+                books.add(book);
+            }
+        }
+        books = bookRepository.saveAll(books);
+
+        userIds = users.stream().mapToLong(User::getId).toArray();
+        bookIds = books.stream().mapToLong(Book::getId).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+}
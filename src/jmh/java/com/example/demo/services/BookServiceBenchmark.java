@@ -0,0 +1,46 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Benchmark
+    public BookDTO findById(ApplicationState state) {
+        long[] ids = state.bookIds;
+        return state.bookService.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public CursorPageDTO<BookDTO> findPage(ApplicationState state) {
+        long[] ids = state.bookIds;
+        return state.bookService.findPage(ids[ThreadLocalRandom.current().nextInt(ids.length)], 50);
+    }
+
+    @Benchmark
+    public BookDTO createBook(ApplicationState state) {
+        return state.bookService.createBook("benchmark", "author", null);
+    }
+
+    @Benchmark
+    public boolean updateBook(ApplicationState state) {
+        long[] ids = state.bookIds;
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return state.bookService.updateBook(id, "title-" + id, "author");
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class MappingState {
+        @Param({"0", "10", "100"})
+        int books;
+
+        User user;
+
+        @Setup
+        public void createUser() {
+            user = new User();
+            user.setId(1L);
+            user.setName("user");
+            user.setEmail("user@example.com");
+            List<Book> userBooks = new ArrayList<>(books);
+            for (int i = 0; i < books; i++) {
+                Book book = new Book();
+                book.setId((long) i);
+                book.setTittle("title" + i);
+                book.setAuthor("author" + i);
+                userBooks.add(book);
+            }
+            user.setBooks(userBooks);
+        }
+    }
+
+    @Benchmark
+    public UserDTO toUserDTO(MappingState state) {
+        return UserMapper.toUserDTO(state.user);
+    }
+
+    @Benchmark
+    public UserDTO findById(ApplicationState state) {
+        long[] ids = state.userIds;
+        return state.userService.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public CursorPageDTO<UserDTO> findPage(ApplicationState state) {
+        long[] ids = state.userIds;
+        return state.userService.findPage(ids[ThreadLocalRandom.current().nextInt(ids.length)], 50);
+    }
+
+    @Benchmark
+    public boolean updateUser(ApplicationState state) {
+        long[] ids = state.userIds;
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return state.userService.updateUser(id, "user" + id, "user" + id + "@example.com");
+    }
+}
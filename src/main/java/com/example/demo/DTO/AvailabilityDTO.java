@@ -0,0 +1,17 @@
+package com.example.demo.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class AvailabilityDTO {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String author;
+
+    private long total;
+    private long available;
+}
@@ -0,0 +1,22 @@
+package com.example.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Состояние индекса доступности: число книг и авторов, объем битовых карт в памяти и время последней сборки.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class AvailabilityIndexDTO {
+    private long books;
+    private long available;
+    private int authors;
+    private long sizeInBytes;
+    private Instant builtAt;
+    private long buildMillis;
+}
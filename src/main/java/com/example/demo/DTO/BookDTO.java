@@ -1,5 +1,6 @@
 package com.example.demo.DTO;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,4 +12,11 @@ public class BookDTO {
     private Long id;
     private String tittle;
     private String author;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long userId;
+
+    public BookDTO(Long id, String tittle, String author) {
+        this(id, tittle, author, null);
+    }
 }
@@ -0,0 +1,14 @@
+package com.example.demo.DTO;
+
+/**
+ * Проекция книги, выбираемая напрямую из запроса без загрузки сущности Book.
+ */
+public interface BookView {
+    Long getId();
+
+    String getTittle();
+
+    String getAuthor();
+
+    Long getUserId();
+}
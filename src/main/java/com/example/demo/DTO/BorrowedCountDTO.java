@@ -0,0 +1,14 @@
+package com.example.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BorrowedCountDTO {
+    private Long userId;
+    private int borrowed;
+    private int limit;
+}
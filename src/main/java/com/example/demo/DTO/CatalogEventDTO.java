@@ -0,0 +1,23 @@
+package com.example.demo.DTO;
+
+import com.example.demo.models.CatalogEvent;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class CatalogEventDTO {
+    private Long id;
+    private CatalogEvent.Type type;
+    private Long entityId;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long userId;
+
+    private Instant createdAt;
+}
@@ -0,0 +1,41 @@
+package com.example.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class CursorPageDTO<T> {
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 500;
+
+    private List<T> items;
+    private Long nextCursor;
+
+    /**
+     * Приводит запрошенный размер страницы к допустимому диапазону [1, MAX_SIZE].
+     */
+    public static int clampSize(Integer size) {
+        if (size == null || size < 1) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    /**
+     * Собирает страницу из выборки размером size + 1: лишняя строка лишь сигнализирует,
+     * что дальше есть данные, и в ответ не попадает.
+     */
+    public static <T> CursorPageDTO<T> of(List<T> rows, int size, Function<T, Long> idOf) {
+        if (rows.size() <= size) {
+            return new CursorPageDTO<>(rows, null);
+        }
+        List<T> items = List.copyOf(rows.subList(0, size));
+        return new CursorPageDTO<>(items, idOf.apply(items.get(size - 1)));
+    }
+}
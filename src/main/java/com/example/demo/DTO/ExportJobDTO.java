@@ -0,0 +1,29 @@
+package com.example.demo.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ExportJobDTO {
+    private String id;
+    private Status status;
+    private long rows;
+    private long bytes;
+    private Instant createdAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant finishedAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+}
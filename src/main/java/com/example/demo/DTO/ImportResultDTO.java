@@ -0,0 +1,25 @@
+package com.example.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ImportResultDTO {
+    private long imported;
+    private long failed;
+    private List<RowError> errors = new ArrayList<>();
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class RowError {
+        private long row;
+        private String message;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo.DTO;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class LendingOperationDTO {
+    @NotNull
+    private Long userId;
+    @NotNull
+    private Long bookId;
+    @NotNull
+    private Action action;
+
+    public enum Action {
+        LEND,
+        RETURN
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class LendingResultDTO {
+    private Long userId;
+    private Long bookId;
+    private LendingOperationDTO.Action action;
+    private Status status;
+    private String message;
+
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        CONFLICT
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.DTO;
+
+/**
+ * Плоская проекция "пользователь + одна из его книг", выбираемая одним JOIN-запросом.
+ * Для пользователя без книг поля книги равны null.
+ */
+public interface UserBookRow {
+    Long getUserId();
+
+    String getName();
+
+    String getEmail();
+
+    Long getBookId();
+
+    String getTittle();
+
+    String getAuthor();
+}
@@ -0,0 +1,52 @@
+package com.example.demo.config;
+
+import com.example.demo.exception.BadRequestException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.regex.Pattern;
+
+/**
+ * Привязывает к потоку запроса филиал из заголовка и шард, в котором он хранится. Запрос без заголовка
+ * работает с филиалом по умолчанию, а списки в нем собираются по всем филиалам.
+ * Ответы зависят от заголовка, поэтому каждый ответ получает Vary с его именем: HTTP-кэши и клиенты
+ * не отдают ответ одного филиала на запрос другого.
+ */
+public class BranchInterceptor implements AsyncHandlerInterceptor {
+    private static final Pattern BRANCH = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final ShardRouter shardRouter;
+    private final String header;
+
+    public BranchInterceptor(ShardRouter shardRouter, String header) {
+        this.shardRouter = shardRouter;
+        this.header = header;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        response.addHeader(HttpHeaders.VARY, header);
+        String branch = request.getHeader(header);
+        if (branch == null || branch.isBlank()) {
+            return true;
+        }
+        branch = branch.trim();
+        if (!BRANCH.matcher(branch).matches()) {
+            throw new BadRequestException("Invalid " + header + " header: expected 1-64 letters, digits, '-' or '_'");
+        }
+        ShardContext.bind(branch, shardRouter.shardOf(branch));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ShardContext.restore(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ShardContext.restore(null);
+    }
+}
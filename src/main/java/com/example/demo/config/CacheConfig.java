@@ -0,0 +1,27 @@
+package com.example.demo.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Включает кэширование чтений каталога. Размер, TTL и сбор статистики кэшей
+ * задаются свойством spring.cache.caffeine.spec.
+ * Регионы кэша второго уровня Hibernate (сущности Book, User и коллекция User.books)
+ * настраиваются отдельно, в application.conf.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String BOOKS = "books";
+    public static final String USERS = "users";
+
+    public static final String BOOK_REGION = "library-books";
+    public static final String USER_REGION = "library-users";
+    public static final String USER_BOOKS_REGION = "library-user-books";
+
+    /**
+     * Пространство запросов нативных UPDATE выдачи и счетчиков: не совпадает ни с одной таблицей,
+     * поэтому Hibernate не сбрасывает после них регионы целиком. Затронутые записи удаляет EntityCache.
+     */
+    public static final String BULK_UPDATE_SPACE = "library-bulk-update";
+}
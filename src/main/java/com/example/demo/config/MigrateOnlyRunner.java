@@ -0,0 +1,29 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Профиль migrate: Flyway применяет миграции при создании контекста, после чего приложение
+ * закрывает контекст и завершает процесс, не дожидаясь запросов и фоновых задач.
+ */
+@Component
+@Profile("migrate")
+public class MigrateOnlyRunner implements ApplicationRunner {
+    private final ConfigurableApplicationContext context;
+
+    @Autowired
+    public MigrateOnlyRunner(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        System.exit(SpringApplication.exit(context));
+    }
+}
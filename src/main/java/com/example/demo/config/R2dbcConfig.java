@@ -0,0 +1,69 @@
+package com.example.demo.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неблокирующий доступ к базе для реактивного API чтения (/reactive/**), свойства spring.r2dbc.*.
+ * При включенном шардировании каждый шард получает свой пул R2DBC того же размера
+ * (адрес — app.sharding.shards.*.r2dbc-url или JDBC-адрес шарда с префиксом r2dbc:).
+ * <p>
+ * Пулы R2DBC намеренно не регистрируются как бины ConnectionFactory: увидев такой бин, Spring Boot
+ * не создает DataSource, а записи и остальные чтения идут через JPA и пул JDBC. Поэтому автоконфигурация
+ * R2DBC отключена в DemoApplication, пулы доступны только через DatabaseClient и закрываются вместе с контекстом.
+ */
+@Configuration
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class R2dbcConfig {
+    private final List<ConnectionPool> connectionPools = new ArrayList<>();
+
+    @Bean
+    public ShardDatabaseClients shardDatabaseClients(R2dbcProperties properties, ShardingProperties sharding) {
+        Map<String, DatabaseClient> clients = new LinkedHashMap<>();
+        clients.put(ShardContext.MAIN_SHARD, DatabaseClient.create(
+                connectionPool("reactive", properties.getUrl(), properties.getUsername(), properties.getPassword(),
+                        properties.getPool())));
+        if (sharding.enabled()) {
+            sharding.shards().forEach((name, shard) -> clients.put(name, DatabaseClient.create(connectionPool(
+                    "reactive-" + name,
+                    shard.r2dbcUrl() != null ? shard.r2dbcUrl() : shard.url().replaceFirst("^jdbc:", "r2dbc:"),
+                    shard.username() != null ? shard.username() : properties.getUsername(),
+                    shard.password() != null ? shard.password() : properties.getPassword(),
+                    properties.getPool()))));
+        }
+        return new ShardDatabaseClients(clients);
+    }
+
+    private ConnectionPool connectionPool(String name, String url, String username, String password,
+                                          R2dbcProperties.Pool pool) {
+        ConnectionPool connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(
+                        ConnectionFactoryBuilder.withUrl(url)
+                                .username(username)
+                                .password(password)
+                                .build())
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .name(name)
+                .build());
+        connectionPools.add(connectionPool);
+        return connectionPool;
+    }
+
+    @PreDestroy
+    void closeConnectionPools() {
+        connectionPools.forEach(ConnectionPool::dispose);
+    }
+}
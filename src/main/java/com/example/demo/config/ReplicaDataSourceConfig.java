@@ -0,0 +1,78 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Маршрутизация чтений на реплику. Включается свойством app.datasource.replica.url.
+ * Транзакции с readOnly = true получают соединение из пула реплики, остальные — из основного пула.
+ * Соединение берется лениво, в момент первого запроса: Hibernate открывает транзакцию раньше,
+ * чем Spring выставляет ее признак readOnly. Поиск по ID, заполняющий кэши, выполняется в обычной транзакции
+ * и читает основную базу: отставание реплики иначе закрепилось бы в кэшах на весь TTL.
+ * <p>
+ * При включенном шардировании не применяется: основной DataSource объявляет {@link ShardDataSourceConfig},
+ * и он же прерывает запуск с понятной ошибкой.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replica.url:}'.isEmpty() and !${app.sharding.enabled:false}")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Пул реплики. Логин и пароль по умолчанию совпадают с основной базой.
+     * Недоступная при старте реплика не мешает запуску приложения.
+     * Соединение ждется не дольше секунды (вместо 30 с Hikari по умолчанию): при недоступной реплике
+     * чтение быстрее уходит на основную базу. Свойства app.datasource.replica.hikari.* привязываются
+     * после этого метода и переопределяют значения, заданные здесь.
+     */
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${app.datasource.replica.url}") String url,
+                                              @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setReadOnly(true);
+        dataSource.setInitializationFailTimeout(-1);
+        dataSource.setConnectionTimeout(1000);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 @Value("${app.datasource.replica.retry-interval:30s}") Duration retryInterval,
+                                 MeterRegistry registry) {
+        Counter fallbacks = Counter.builder("library.datasource.replica.fallback")
+                .description("Read-only connections served by the primary because the replica was unavailable")
+                .register(registry);
+        DataSource replicaWithFallback = new ReplicaFallbackDataSource(replica, primary, retryInterval, fallbacks);
+        return new LazyConnectionDataSourceProxy(new ReadReplicaRoutingDataSource(primary, replicaWithFallback));
+    }
+}
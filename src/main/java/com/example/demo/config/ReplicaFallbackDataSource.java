@@ -0,0 +1,62 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Пул реплики с переключением на основную базу. Если реплика не выдала соединение,
+ * чтения уходят в основную базу, а следующая попытка обратиться к реплике
+ * делается не раньше чем через retryInterval.
+ */
+public class ReplicaFallbackDataSource extends DelegatingDataSource {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaFallbackDataSource.class);
+
+    private final DataSource primary;
+    private final long retryIntervalNanos;
+    private final Counter fallbacks;
+    private volatile long replicaDownUntil;
+    private volatile boolean replicaDown;
+
+    public ReplicaFallbackDataSource(DataSource replica, DataSource primary, Duration retryInterval, Counter fallbacks) {
+        super(replica);
+        this.primary = primary;
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.fallbacks = fallbacks;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replicaDown && System.nanoTime() - replicaDownUntil < 0) {
+            return primaryConnection();
+        }
+        try {
+            Connection connection = super.getConnection();
+            replicaDown = false;
+            return connection;
+        } catch (SQLException e) {
+            replicaDownUntil = System.nanoTime() + retryIntervalNanos;
+            replicaDown = true;
+            log.warn("Read replica is unavailable, routing reads to the primary: {}", e.getMessage());
+            return primaryConnection();
+        }
+    }
+
+    private Connection primaryConnection() throws SQLException {
+        fallbacks.increment();
+        Connection connection = primary.getConnection();
+        connection.setReadOnly(true);
+        return connection;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+}
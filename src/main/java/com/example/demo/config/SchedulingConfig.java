@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * Включает фоновые задачи (@Scheduled): публикацию и рассылку событий каталога подписчикам и очистку outbox.
+ * В профиле migrate задачи не запускаются: процесс только применяет миграции.
+ */
+@Configuration
+@Profile("!migrate")
+@EnableScheduling
+public class SchedulingConfig {
+
+    /**
+     * Бины с @Scheduled-методами создаются при старте и при spring.main.lazy-initialization=true (профиль prod).
+     * Задачи регистрируются при создании бина, а ленивый бин, к которому не обратился ни один запрос,
+     * не создается вовсе: просроченные выдачи не отмечались бы, а события и экспорты не очищались бы.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null && hasScheduledMethods(beanType);
+    }
+
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        Class<?> userClass = ClassUtils.getUserClass(beanType);
+        if (!AnnotationUtils.isCandidateClass(userClass, Scheduled.class)) {
+            return false;
+        }
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(userClass)) {
+            if (AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.config;
+
+/**
+ * Филиал и шард, с которыми работает текущий поток. Привязываются на время HTTP-запроса
+ * по заголовку филиала ({@link BranchInterceptor}) и на время обращения к конкретному шарду
+ * (CatalogShards); {@link ShardRoutingDataSource} выбирает по ним пул соединений.
+ * Без привязки поток работает с филиалом {@link #DEFAULT_BRANCH} в основной базе.
+ */
+public final class ShardContext {
+    public static final String DEFAULT_BRANCH = "main";
+    public static final String MAIN_SHARD = "main";
+
+    private static final ThreadLocal<Binding> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Возвращает филиал текущего потока или {@link #DEFAULT_BRANCH}, если филиал не задан.
+     */
+    public static String currentBranch() {
+        Binding binding = CURRENT.get();
+        return binding == null || binding.branch() == null ? DEFAULT_BRANCH : binding.branch();
+    }
+
+    /**
+     * Проверяет, задан ли филиал явно. Без филиала списки собираются по всем филиалам.
+     */
+    public static boolean isBranchBound() {
+        Binding binding = CURRENT.get();
+        return binding != null && binding.branch() != null;
+    }
+
+    /**
+     * Возвращает шард текущего потока или null для основной базы.
+     */
+    public static String currentShard() {
+        Binding binding = CURRENT.get();
+        return binding == null ? null : binding.shard();
+    }
+
+    /**
+     * Привязывает филиал и шард к текущему потоку.
+     *
+     * @return предыдущая привязка, которую нужно вернуть через {@link #restore(Binding)}.
+     */
+    public static Binding bind(String branch, String shard) {
+        Binding previous = CURRENT.get();
+        CURRENT.set(new Binding(branch, shard));
+        return previous;
+    }
+
+    /**
+     * Возвращает привязку, действовавшую до {@link #bind(String, String)}; null снимает привязку.
+     */
+    public static void restore(Binding previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public record Binding(String branch, String shard) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Шардирование каталога по филиалам. Включается свойством app.sharding.enabled.
+ * Каждый дополнительный шард получает свой пул; транзакция получает соединение из пула шарда,
+ * привязанного к потоку (филиал запроса), остальное идет в основную базу. Соединение берется лениво,
+ * в момент первого запроса, как и при маршрутизации на реплику.
+ * <p>
+ * Если миграции включены, при старте они применяются к каждому шарду, а последовательности шарда
+ * переносятся в начало его диапазона ID (id-offset).
+ * <p>
+ * С маршрутизацией на реплику ({@link ReplicaDataSourceConfig}) не совмещается: обе конфигурации
+ * объявляют основной DataSource, поэтому при заданном app.datasource.replica.url запуск прерывается.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+public class ShardDataSourceConfig {
+    private static final Logger log = LoggerFactory.getLogger(ShardDataSourceConfig.class);
+    private static final List<String> SEQUENCES = List.of("users_seq", "books_seq", "catalog_events_seq", "loans_seq");
+
+    public ShardDataSourceConfig(@Value("${app.datasource.replica.url:}") String replicaUrl) {
+        if (!replicaUrl.isBlank()) {
+            throw new IllegalStateException("app.sharding.enabled cannot be combined with app.datasource.replica.url: "
+                    + "configure read replicas per shard outside the application or disable one of them");
+        }
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource mainShardDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ShardContext.MAIN_SHARD);
+        return dataSource;
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(@Qualifier("mainShardDataSource") DataSource main,
+                                                         ShardingProperties sharding,
+                                                         DataSourceProperties properties,
+                                                         @Value("${spring.flyway.enabled:true}") boolean migrate) {
+        Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+        sharding.shards().forEach((name, shard) -> {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(name);
+            dataSource.setJdbcUrl(shard.url());
+            dataSource.setUsername(shard.username() != null ? shard.username() : properties.determineUsername());
+            dataSource.setPassword(shard.password() != null ? shard.password() : properties.determinePassword());
+            dataSource.setDriverClassName(properties.determineDriverClassName());
+            dataSource.setMaximumPoolSize(shard.maximumPoolSize());
+            pools.put(name, dataSource);
+            if (migrate) {
+                migrate(name, dataSource, shard.idOffset());
+            }
+        });
+        return new ShardRoutingDataSource(main, pools);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    private void migrate(String name, DataSource dataSource, long idOffset) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String sequence : SEQUENCES) {
+            Long last = jdbcTemplate.queryForObject("select last_value from " + sequence, Long.class);
+            if (last != null && last < idOffset) {
+                // как и в V1: шаг 50 pooled-оптимизатора, первый блок ID начинается сразу после id-offset
+                jdbcTemplate.queryForObject("select setval(?::regclass, ?, false)", Long.class, sequence, idOffset + 50);
+            }
+        }
+        log.info("Shard {} migrated, IDs start at {}", name, idOffset);
+    }
+}
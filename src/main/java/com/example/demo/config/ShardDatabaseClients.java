@@ -0,0 +1,36 @@
+package com.example.demo.config;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Клиенты R2DBC шардов каталога. Клиент выбирается по шарду, привязанному к потоку ({@link ShardContext})
+ * в момент построения запроса; без привязки — основная база.
+ */
+public class ShardDatabaseClients {
+    private final Map<String, DatabaseClient> clients;
+
+    /**
+     * @param clients клиенты по имени шарда; должен быть и клиент {@link ShardContext#MAIN_SHARD}.
+     */
+    public ShardDatabaseClients(Map<String, DatabaseClient> clients) {
+        this.clients = Map.copyOf(clients);
+    }
+
+    /**
+     * Возвращает клиента шарда текущего потока.
+     */
+    public DatabaseClient current() {
+        String shard = ShardContext.currentShard();
+        return clients.get(shard == null ? ShardContext.MAIN_SHARD : shard);
+    }
+
+    /**
+     * Возвращает клиентов всех шардов.
+     */
+    public List<DatabaseClient> all() {
+        return List.copyOf(clients.values());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Распределение филиалов по шардам. Филиал, не назначенный ни одному дополнительному шарду,
+ * хранится в основной базе; при выключенном шардировании основная база — единственный шард.
+ * Каждый дополнительный шард выдает ID начиная со своего id-offset, основная база — ниже наименьшего
+ * id-offset, поэтому шард записи определяется и по ее ID.
+ */
+public class ShardRouter {
+    private static final long MAX_ID_OFFSET = Integer.MAX_VALUE;
+
+    private final List<String> shards = new ArrayList<>();
+    private final Map<String, String> shardByBranch = new HashMap<>();
+    private final NavigableMap<Long, String> shardByIdOffset = new TreeMap<>(Map.of(0L, ShardContext.MAIN_SHARD));
+
+    public ShardRouter(ShardingProperties properties) {
+        shards.add(ShardContext.MAIN_SHARD);
+        if (!properties.enabled()) {
+            return;
+        }
+        Map<Long, String> shardByOffset = new HashMap<>();
+        properties.shards().forEach((name, shard) -> {
+            if (name.equals(ShardContext.MAIN_SHARD)) {
+                throw new IllegalStateException("Shard name '" + name + "' is reserved for the primary database");
+            }
+            // ID книг хранятся в индексе доступности как int
+            if (shard.idOffset() <= 0 || shard.idOffset() >= MAX_ID_OFFSET) {
+                throw new IllegalStateException("Shard '" + name + "' needs an id-offset between 1 and " + MAX_ID_OFFSET);
+            }
+            String sameOffset = shardByOffset.put(shard.idOffset(), name);
+            if (sameOffset != null) {
+                throw new IllegalStateException("Shards '" + sameOffset + "' and '" + name + "' share an id-offset");
+            }
+            shards.add(name);
+            shardByIdOffset.put(shard.idOffset(), name);
+            for (String branch : shard.branches()) {
+                String assigned = shardByBranch.put(branch, name);
+                if (assigned != null) {
+                    throw new IllegalStateException("Branch '" + branch + "' is assigned to shards '"
+                            + assigned + "' and '" + name + "'");
+                }
+            }
+        });
+    }
+
+    /**
+     * Возвращает шард, в котором хранится филиал.
+     */
+    public String shardOf(String branch) {
+        return shardByBranch.getOrDefault(branch, ShardContext.MAIN_SHARD);
+    }
+
+    /**
+     * Возвращает шард, выдавший ID: шард с наибольшим id-offset, не превышающим ID.
+     */
+    public String shardOfId(long id) {
+        Map.Entry<Long, String> shard = shardByIdOffset.floorEntry(id);
+        return shard == null ? ShardContext.MAIN_SHARD : shard.getValue();
+    }
+
+    /**
+     * Возвращает все шарды; основная база — первая.
+     */
+    public List<String> shards() {
+        return List.copyOf(shards);
+    }
+}
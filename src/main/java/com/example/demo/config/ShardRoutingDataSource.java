@@ -0,0 +1,41 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Выбирает пул по шарду, привязанному к текущему потоку ({@link ShardContext}); без привязки —
+ * основную базу. Шард выбирается в момент получения соединения, поэтому транзакция целиком
+ * выполняется в одном шарде.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private final Map<String, HikariDataSource> shardPools;
+
+    /**
+     * @param main       пул основной базы; закрывается вместе с контекстом как отдельный бин.
+     * @param shardPools пулы дополнительных шардов по имени; закрываются в {@link #close()}.
+     */
+    public ShardRoutingDataSource(DataSource main, Map<String, HikariDataSource> shardPools) {
+        this.shardPools = Map.copyOf(shardPools);
+        Map<Object, Object> targets = new HashMap<>(shardPools);
+        targets.put(ShardContext.MAIN_SHARD, main);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(main);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.currentShard();
+    }
+
+    @Override
+    public void close() {
+        shardPools.values().forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Филиалы каталога: распределение филиалов по шардам и привязка филиала запроса ко всем API каталога:
+ * /books, /users, событиям, выгрузкам и реактивным чтениям.
+ * Пулы шардов настраивает {@link ShardDataSourceConfig}.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig implements WebMvcConfigurer {
+    private final ShardingProperties properties;
+
+    @Autowired
+    public ShardingConfig(ShardingProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public ShardRouter shardRouter() {
+        return new ShardRouter(properties);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new BranchInterceptor(shardRouter(), properties.branchHeader()))
+                .addPathPatterns("/books/**", "/users/**", "/events/**", "/exports/**", "/reactive/**");
+    }
+}
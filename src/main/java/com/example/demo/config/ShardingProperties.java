@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Настройки шардирования каталога по филиалам (app.sharding.*). Основная база (spring.datasource)
+ * считается шардом {@link ShardContext#MAIN_SHARD} и хранит все филиалы, не перечисленные у других шардов.
+ *
+ * @param enabled      включает маршрутизацию по шардам; без нее все филиалы хранятся в основной базе.
+ * @param branchHeader заголовок HTTP-запроса с филиалом.
+ * @param shards       дополнительные шарды по имени.
+ */
+@ConfigurationProperties("app.sharding")
+public record ShardingProperties(@DefaultValue("false") boolean enabled,
+                                 @DefaultValue("X-Branch") String branchHeader,
+                                 Map<String, Shard> shards) {
+
+    public ShardingProperties {
+        shards = shards == null ? Map.of() : shards;
+    }
+
+    /**
+     * Дополнительный шард. Логин и пароль по умолчанию совпадают с основной базой.
+     *
+     * @param r2dbcUrl        адрес шарда для реактивного API; по умолчанию JDBC-адрес с префиксом r2dbc:.
+     * @param branches        филиалы, хранящиеся в шарде.
+     * @param idOffset        начало диапазона ID шарда: последовательности шарда начинаются с него,
+     *                        поэтому ID книг и пользователей уникальны во всем каталоге.
+     * @param maximumPoolSize размер пула соединений шарда.
+     */
+    public record Shard(String url,
+                        String username,
+                        String password,
+                        String r2dbcUrl,
+                        List<String> branches,
+                        long idOffset,
+                        @DefaultValue("10") int maximumPoolSize) {
+
+        public Shard {
+            branches = branches == null ? List.of() : branches;
+        }
+    }
+}
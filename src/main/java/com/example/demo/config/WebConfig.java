@@ -0,0 +1,43 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * Ограничение частоты и сброс нагрузки для изменяющих запросов к /books и /users.
+ * Отключается свойством app.rate-limit.enabled=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class WebConfig implements WebMvcConfigurer {
+    private final WriteThrottlingInterceptor writeThrottlingInterceptor;
+
+    @Autowired
+    public WebConfig(DataSource dataSource,
+                     MeterRegistry registry,
+                     @Value("${app.rate-limit.client.burst:40}") long clientBurst,
+                     @Value("${app.rate-limit.client.per-second:20}") double clientPerSecond,
+                     @Value("${app.rate-limit.global.burst:400}") long globalBurst,
+                     @Value("${app.rate-limit.global.per-second:200}") double globalPerSecond,
+                     @Value("${app.rate-limit.client-header:}") String clientHeader,
+                     @Value("${app.rate-limit.max-clients:100000}") long maxClients,
+                     @Value("${app.load-shedding.max-in-flight:20}") int maxInFlight,
+                     @Value("${app.load-shedding.max-pending-connections:10}") int maxPendingConnections) {
+        this.writeThrottlingInterceptor = new WriteThrottlingInterceptor(
+                new WriteThrottlingInterceptor.Settings(clientBurst, clientPerSecond, globalBurst, globalPerSecond,
+                        clientHeader, maxClients, maxInFlight, maxPendingConnections),
+                dataSource, registry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(writeThrottlingInterceptor).addPathPatterns("/books/**", "/users/**");
+    }
+}
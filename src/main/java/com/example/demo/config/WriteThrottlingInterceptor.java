@@ -0,0 +1,158 @@
+package com.example.demo.config;
+
+import com.example.demo.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Защищает базу от изменяющих запросов (POST, PUT, PATCH, DELETE), чтобы они не вытесняли чтения.
+ * <ul>
+ *     <li>сброс нагрузки: 503, если изменений в обработке больше maxInFlight или
+ *     в очереди за соединением Hikari ждут больше maxPendingConnections потоков;</li>
+ *     <li>token bucket на клиента (заголовок clientHeader или адрес клиента): 429;</li>
+ *     <li>общий token bucket на все изменения: 429.</li>
+ * </ul>
+ * Во всех случаях клиент получает Retry-After. Чтения не ограничиваются.
+ */
+public class WriteThrottlingInterceptor implements HandlerInterceptor {
+    private static final Set<String> MUTATIONS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final String IN_FLIGHT_ATTRIBUTE = WriteThrottlingInterceptor.class.getName() + ".inFlight";
+
+    private final Settings settings;
+    private final DataSource dataSource;
+    private final TokenBucket globalBucket;
+    private final Cache<String, TokenBucket> clientBuckets;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejectedByClientLimit;
+    private final Counter rejectedByGlobalLimit;
+    private final Counter shedInFlight;
+    private final Counter shedPendingConnections;
+
+    public WriteThrottlingInterceptor(Settings settings, DataSource dataSource, MeterRegistry registry) {
+        this.settings = settings;
+        this.dataSource = dataSource;
+        this.globalBucket = new TokenBucket(settings.globalBurst(), settings.globalPerSecond(), System::nanoTime);
+        this.clientBuckets = Caffeine.newBuilder()
+                .maximumSize(settings.maxClients())
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+
+        this.rejectedByClientLimit = rejected(registry, "library.ratelimit.rejected", "scope", "client");
+        this.rejectedByGlobalLimit = rejected(registry, "library.ratelimit.rejected", "scope", "global");
+        this.shedInFlight = rejected(registry, "library.loadshedding.rejected", "reason", "in_flight");
+        this.shedPendingConnections = rejected(registry, "library.loadshedding.rejected", "reason", "pending_connections");
+        Gauge.builder("library.ratelimit.global.tokens", globalBucket, TokenBucket::available)
+                .description("Tokens left in the global write bucket")
+                .register(registry);
+        Gauge.builder("library.ratelimit.clients", clientBuckets, Cache::estimatedSize)
+                .description("Clients with a tracked write bucket")
+                .register(registry);
+        Gauge.builder("library.loadshedding.in_flight", inFlight, AtomicInteger::get)
+                .description("Write requests currently being processed")
+                .register(registry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!MUTATIONS.contains(request.getMethod())) {
+            return true;
+        }
+        // место занимается до проверки, чтобы одновременные запросы не прошли лимит вместе
+        if (inFlight.incrementAndGet() > settings.maxInFlight()) {
+            inFlight.decrementAndGet();
+            shedInFlight.increment();
+            throw new TooManyRequestsException("Server is busy, retry later", true, 1);
+        }
+        try {
+            checkLimits(request);
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+        request.setAttribute(IN_FLIGHT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(IN_FLIGHT_ATTRIBUTE) != null) {
+            request.removeAttribute(IN_FLIGHT_ATTRIBUTE);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void checkLimits(HttpServletRequest request) {
+        if (pendingConnections() > settings.maxPendingConnections()) {
+            shedPendingConnections.increment();
+            throw new TooManyRequestsException("Server is busy, retry later", true, 1);
+        }
+
+        TokenBucket clientBucket = clientBuckets.get(clientKey(request),
+                key -> new TokenBucket(settings.clientBurst(), settings.clientPerSecond(), System::nanoTime));
+        long clientWait = clientBucket.tryAcquire();
+        if (clientWait > 0) {
+            rejectedByClientLimit.increment();
+            throw new TooManyRequestsException("Rate limit exceeded", false, toRetryAfter(clientWait));
+        }
+        long globalWait = globalBucket.tryAcquire();
+        if (globalWait > 0) {
+            rejectedByGlobalLimit.increment();
+            throw new TooManyRequestsException("Rate limit exceeded", false, toRetryAfter(globalWait));
+        }
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        if (!settings.clientHeader().isEmpty()) {
+            String key = request.getHeader(settings.clientHeader());
+            if (key != null && !key.isBlank()) {
+                return key;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * Число потоков, ждущих соединение из основного пула; 0, если пул не Hikari или еще не запущен.
+     */
+    private int pendingConnections() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                return pool == null ? 0 : pool.getThreadsAwaitingConnection();
+            }
+        } catch (SQLException ignored) {
+            // пул недоступен для проверки: решение принимается только по числу запросов в обработке
+        }
+        return 0;
+    }
+
+    private static long toRetryAfter(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private static Counter rejected(MeterRegistry registry, String name, String tag, String value) {
+        return Counter.builder(name).tag(tag, value).register(registry);
+    }
+
+    /**
+     * Параметры ограничений (свойства app.rate-limit.* и app.load-shedding.*).
+     */
+    public record Settings(long clientBurst, double clientPerSecond, long globalBurst, double globalPerSecond,
+                           String clientHeader, long maxClients, int maxInFlight, int maxPendingConnections) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.AvailabilityDTO;
+import com.example.demo.DTO.AvailabilityIndexDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.services.AvailabilityIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/books/available")
+public class AvailabilityController {
+    private final AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    public AvailabilityController(AvailabilityIndex availabilityIndex) {
+        this.availabilityIndex = availabilityIndex;
+    }
+
+    @GetMapping
+    public CursorPageDTO<Long> getAvailableBooks(@RequestParam(defaultValue = "") List<String> author,
+                                                 @RequestParam(required = false) Long after,
+                                                 @RequestParam(required = false) Integer size) {
+        return availabilityIndex.findAvailable(author, after, size);
+    }
+
+    @GetMapping("/count")
+    public AvailabilityDTO countAvailableBooks(@RequestParam(defaultValue = "") List<String> author) {
+        return availabilityIndex.count(author);
+    }
+
+    @GetMapping("/index")
+    public AvailabilityIndexDTO getIndex() {
+        return availabilityIndex.report();
+    }
+
+    @PostMapping("/index/rebuild")
+    public AvailabilityIndexDTO rebuildIndex() {
+        return availabilityIndex.rebuild();
+    }
+}
@@ -1,42 +1,113 @@
 package com.example.demo.controllers;
 
-import com.example.demo.models.Book;
+import com.example.demo.DTO.AvailabilityDTO;
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.ImportResultDTO;
+import com.example.demo.config.ShardContext;
 import com.example.demo.services.BookService;
+import com.example.demo.services.CatalogCache;
+import com.example.demo.services.ImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/books")
 public class BookController {
     private BookService bookService;
+    private final ImportService importService;
+    private final CatalogCache catalogCache;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, ImportService importService,
+                          CatalogCache catalogCache, ObjectMapper objectMapper) {
         this.bookService = bookService;
+        this.importService = importService;
+        this.catalogCache = catalogCache;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<Book> getAllBooks() {
-        return bookService.findAll();
+    public CursorPageDTO<BookDTO> getAllBooks(@RequestParam(required = false) Long after,
+                                           @RequestParam(required = false) Integer size,
+                                           WebRequest request) {
+        if (request.checkNotModified(catalogCache.etag())) {
+            return null;
+        }
+        return bookService.findPage(after, size);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        // тело пишется в другом потоке, где филиал запроса уже не привязан
+        String branch = ShardContext.isBranchBound() ? ShardContext.currentBranch() : null;
+        StreamingResponseBody body = out -> bookService.streamAll(branch, book -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(book));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/search")
+    public List<BookDTO> searchBooks(@RequestParam String q,
+                                     @RequestParam(defaultValue = "0") int page,
+                                     @RequestParam(required = false) Integer size,
+                                     WebRequest request) {
+        if (request.checkNotModified(catalogCache.etag())) {
+            return null;
+        }
+        return bookService.search(q, page, size);
+    }
+
+    @GetMapping("/availability")
+    public AvailabilityDTO getAvailability(@RequestParam(required = false) String author, WebRequest request) {
+        if (request.checkNotModified(catalogCache.etag())) {
+            return null;
+        }
+        return bookService.availability(author);
     }
 
     @GetMapping("/{id}")
-    public Book getBookById(@PathVariable Long id) {
+    public BookDTO getBookById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(catalogCache.etag())) {
+            return null;
+        }
         return bookService.findById(id);
     }
 
     @PostMapping
-    public ResponseEntity<Book> createBook(@RequestParam String tittle,
+    public ResponseEntity<BookDTO> createBook(@RequestParam String tittle,
                                            @RequestParam String author,
                                            @RequestParam(required = false) Long userId) {
-    Book newBook = bookService.createBook(tittle, author, userId);
+    BookDTO newBook = bookService.createBook(tittle, author, userId);
     return new ResponseEntity<>(newBook, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ResponseEntity<ImportResultDTO> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                       InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importBooks(body, contentType));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteBook(@PathVariable Long id) {
         boolean success = bookService.deleteBook(id);
@@ -0,0 +1,39 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.services.CatalogEventStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+
+@RestController
+@RequestMapping("/events")
+public class EventController {
+    private static final int MAX_POLL_TIMEOUT_SECONDS = 60;
+
+    private final CatalogEventStream catalogEventStream;
+
+    @Autowired
+    public EventController(CatalogEventStream catalogEventStream) {
+        this.catalogEventStream = catalogEventStream;
+    }
+
+    @GetMapping
+    public DeferredResult<List<CatalogEventDTO>> pollEvents(@RequestParam(defaultValue = "0") long after,
+                                                            @RequestParam(required = false) Integer size,
+                                                            @RequestParam(defaultValue = "30") int timeout) {
+        int seconds = Math.max(1, Math.min(timeout, MAX_POLL_TIMEOUT_SECONDS));
+        return catalogEventStream.poll(after, size, Duration.ofSeconds(seconds));
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestParam(defaultValue = "0") long after,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return catalogEventStream.subscribe(lastEventId != null ? lastEventId : after);
+    }
+}
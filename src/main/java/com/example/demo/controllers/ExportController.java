@@ -0,0 +1,52 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.ExportJobDTO;
+import com.example.demo.services.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.nio.file.Path;
+
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+    private static final MediaType APPLICATION_GZIP = MediaType.valueOf("application/gzip");
+
+    private final ExportService exportService;
+
+    @Autowired
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @PostMapping("/books")
+    public ResponseEntity<ExportJobDTO> startBooksExport() {
+        ExportJobDTO job = exportService.startBooksExport();
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/exports/{id}").buildAndExpand(job.getId()).toUri())
+                .body(job);
+    }
+
+    @GetMapping("/{id}")
+    public ExportJobDTO getExport(@PathVariable String id) {
+        return exportService.getJob(id);
+    }
+
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> downloadExport(@PathVariable String id) {
+        Path file = exportService.getFile(id);
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                .body(new FileSystemResource(file));
+    }
+}
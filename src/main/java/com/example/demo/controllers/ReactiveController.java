@@ -0,0 +1,49 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.services.ReactiveCatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/reactive")
+public class ReactiveController {
+    private final ReactiveCatalogService reactiveCatalogService;
+
+    @Autowired
+    public ReactiveController(ReactiveCatalogService reactiveCatalogService) {
+        this.reactiveCatalogService = reactiveCatalogService;
+    }
+
+    /**
+     * Потоковая выдача книг по одной строке NDJSON; без limit передается весь каталог после курсора.
+     */
+    @GetMapping(value = "/books", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BookDTO> streamBooks(@RequestParam(required = false) Long after,
+                                     @RequestParam(required = false) Integer limit) {
+        return reactiveCatalogService.streamBooks(after, limit);
+    }
+
+    /**
+     * JSON-массив собирается в памяти целиком до отправки, поэтому limit ограничивается
+     * CursorPageDTO.MAX_SIZE; следующую страницу запрашивают с after, равным ID последней книги.
+     */
+    @GetMapping(value = "/books", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<BookDTO> listBooks(@RequestParam(required = false) Long after,
+                                   @RequestParam(required = false) Integer limit) {
+        return reactiveCatalogService.streamBooks(after, CursorPageDTO.clampSize(limit));
+    }
+
+    @GetMapping("/users/{id}")
+    public Mono<ResponseEntity<UserDTO>> getUser(@PathVariable Long id) {
+        return reactiveCatalogService.findUser(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -1,42 +1,112 @@
 package com.example.demo.controllers;
 
+import com.example.demo.DTO.BorrowedCountDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.ImportResultDTO;
+import com.example.demo.DTO.LendingOperationDTO;
+import com.example.demo.DTO.LendingResultDTO;
 import com.example.demo.DTO.UserDTO;
+import com.example.demo.config.ShardContext;
 import com.example.demo.services.UserService;
+import com.example.demo.services.CatalogCache;
+import com.example.demo.services.ImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final ImportService importService;
+    private final CatalogCache catalogCache;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ImportService importService,
+                          CatalogCache catalogCache, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.importService = importService;
+        this.catalogCache = catalogCache;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<UserDTO> getById(@PathVariable Long id) {
+    public ResponseEntity<UserDTO> getById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(catalogCache.etag())) {
+            return null;
+        }
         UserDTO userDTO = userService.findById(id);
         return ResponseEntity.ok(userDTO);
     }
 
+    @GetMapping("/{id}/borrowed")
+    public ResponseEntity<BorrowedCountDTO> getBorrowedCount(@PathVariable Long id) {
+        BorrowedCountDTO borrowed = userService.findBorrowedCount(id);
+        return borrowed == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(borrowed);
+    }
+
+    @GetMapping("/by-email")
+    public ResponseEntity<UserDTO> getByEmail(@RequestParam String email) {
+        UserDTO userDTO = userService.findByEmail(email);
+        if (userDTO == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(userDTO);
+    }
+
     @GetMapping
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        List<UserDTO> users = userService.findAll();
+    public ResponseEntity<CursorPageDTO<UserDTO>> getAllUsers(@RequestParam(required = false) Long after,
+                                                             @RequestParam(required = false) Integer size,
+                                                             WebRequest request) {
+        if (request.checkNotModified(catalogCache.etag())) {
+            return null;
+        }
+        CursorPageDTO<UserDTO> users = userService.findPage(after, size);
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        // тело пишется в другом потоке, где филиал запроса уже не привязан
+        String branch = ShardContext.isBranchBound() ? ShardContext.currentBranch() : null;
+        StreamingResponseBody body = out -> userService.streamAll(branch, user -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(user));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PostMapping
     public UserDTO createUser(@RequestParam String name, @RequestParam String email) {
         return userService.createUser(name, email);
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ResponseEntity<ImportResultDTO> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                       InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importUsers(body, contentType));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteUser(@Valid @PathVariable Long id) {
         boolean isDeleted = userService.deleteUser(id);
@@ -48,6 +118,12 @@ public class UserController {
         }
     }
 
+    @DeleteMapping("/inactive")
+    public ResponseEntity<String> deleteInactiveUsers(@RequestParam Instant before) {
+        int deleted = userService.deleteInactiveUsers(before);
+        return ResponseEntity.ok(deleted + " users inactive since " + before + " deleted successfully.");
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<String> updateUser(@PathVariable Long id,
                                              @RequestParam String name,
@@ -74,6 +150,11 @@ public class UserController {
         }
     }
 
+    @PostMapping("/books/batch")
+    public List<LendingResultDTO> applyLendingBatch(@RequestBody List<@Valid LendingOperationDTO> operations) {
+        return userService.applyLendingBatch(operations);
+    }
+
     @PatchMapping("/{userId}/books/{bookId}/remove")
     public ResponseEntity<String> removeBookFromUser(@PathVariable Long bookId,
                                                      @PathVariable Long userId) {
@@ -0,0 +1,10 @@
+package com.example.demo.exception;
+
+/**
+ * Некорректный запрос клиента (400): неверный заголовок, формат или состав тела запроса.
+ */
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
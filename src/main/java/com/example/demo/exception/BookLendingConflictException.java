@@ -0,0 +1,7 @@
+package com.example.demo.exception;
+
+public class BookLendingConflictException extends RuntimeException {
+    public BookLendingConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.exception;
+
+public class BorrowLimitExceededException extends RuntimeException {
+    public BorrowLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.exception;
+
+public class ExportNotFoundException extends RuntimeException {
+    public ExportNotFoundException(String message) {
+        super(message);
+    }
+}
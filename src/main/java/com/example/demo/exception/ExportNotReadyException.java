@@ -0,0 +1,10 @@
+package com.example.demo.exception;
+
+/**
+ * Файл выгрузки запрошен до успешного завершения задачи (задача в очереди, выполняется или завершилась ошибкой).
+ */
+public class ExportNotReadyException extends RuntimeException {
+    public ExportNotReadyException(String message) {
+        super(message);
+    }
+}
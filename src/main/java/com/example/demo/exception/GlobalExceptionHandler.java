@@ -1,13 +1,21 @@
 package com.example.demo.exception;
 
+import com.example.demo.models.User;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -20,4 +28,61 @@ public class GlobalExceptionHandler {
         );
         return errors;
     }
+
+    @ExceptionHandler(BadRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleBadRequest(BadRequestException ex) {
+        return Map.of("error", Objects.requireNonNullElse(ex.getMessage(), "Bad request"));
+    }
+
+    @ExceptionHandler({BookNotFoundException.class, UserNotFoundException.class, ExportNotFoundException.class})
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, String> handleNotFound(RuntimeException ex) {
+        return Map.of("error", ex.getMessage());
+    }
+
+    @ExceptionHandler({BookLendingConflictException.class, BorrowLimitExceededException.class})
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleLendingConflict(RuntimeException ex) {
+        return Map.of("error", ex.getMessage());
+    }
+
+    @ExceptionHandler(ExportNotReadyException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleExportNotReady(ExportNotReadyException ex) {
+        return Map.of("error", ex.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleOptimisticLock(OptimisticLockingFailureException ex) {
+        return Map.of("error", "The resource was modified concurrently, retry the request");
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        if (violates(ex, User.EMAIL_INDEX)) {
+            return Map.of("error", "A user with this email already exists");
+        }
+        return Map.of("error", "The request conflicts with existing data");
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Map<String, String>> handleTooManyRequests(TooManyRequestsException ex) {
+        return ResponseEntity.status(ex.isOverloaded() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of("error", ex.getMessage()));
+    }
+
+    /**
+     * Проверяет имя нарушенного ограничения. PostgreSQL сообщает имя индекса как есть,
+     * H2 — в верхнем регистре и со схемой, поэтому имя ищется без учета регистра.
+     */
+    private static boolean violates(DataIntegrityViolationException ex, String constraint) {
+        if (ex.getCause() instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+            return violation.getConstraintName().toLowerCase(Locale.ROOT).contains(constraint);
+        }
+        return false;
+    }
 }
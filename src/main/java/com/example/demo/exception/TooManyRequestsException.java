@@ -0,0 +1,19 @@
+package com.example.demo.exception;
+
+import lombok.Getter;
+
+/**
+ * Запрос отклонен ограничителем частоты (429) или сбросом нагрузки (503).
+ * retryAfterSeconds передается клиенту в заголовке Retry-After.
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+    private final boolean overloaded;
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, boolean overloaded, long retryAfterSeconds) {
+        super(message);
+        this.overloaded = overloaded;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Количество книг автора: всего и доступных для выдачи.
+ */
+@Entity(name = "author_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorStats {
+    @Id
+    @Column(name = "author")
+    private String author;
+
+    @Column(name = "total", nullable = false)
+    private long total;
+
+    @Column(name = "available", nullable = false)
+    private long available;
+}
@@ -1,17 +1,24 @@
 package com.example.demo.models;
 
+import com.example.demo.config.CacheConfig;
+import com.example.demo.config.ShardContext;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity(name = "books")
 @Data
 @NoArgsConstructor
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.BOOK_REGION)
 public class Book {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_seq")
+    @SequenceGenerator(name = "books_seq", sequenceName = "books_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "tittle", nullable = false)
@@ -22,7 +29,16 @@ public class Book {
     @Size(min = 1, max = 128, message = "Имя автора должно быть от 1 до 128 символов  ")
     private String author;
 
+    @Version
+    private Long version;
+
+    /**
+     * Филиал, к которому относится книга; определяет шард, в котором хранится строка.
+     */
+    @Column(name = "branch", nullable = false, updatable = false)
+    private String branch = ShardContext.DEFAULT_BRANCH;
+
     @JsonBackReference
-    @ManyToOne(optional = true)
+    @ManyToOne(optional = true, fetch = FetchType.LAZY)
     private User user;
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.example.demo.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Запись outbox: компактное событие об изменении книги или пользователя.
+ * Потребитель по entityId сам перечитывает актуальное состояние.
+ * Смещение position назначается после коммита и задает порядок чтения; до публикации оно null.
+ */
+@Entity(name = "catalog_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "catalog_events_seq")
+    @SequenceGenerator(name = "catalog_events_seq", sequenceName = "catalog_events_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 32)
+    private Type type;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "position", unique = true)
+    private Long position;
+
+    public enum Type {
+        BOOK_CREATED,
+        BOOK_UPDATED,
+        BOOK_DELETED,
+        BOOK_LENT,
+        BOOK_RETURNED,
+        USER_CREATED,
+        USER_UPDATED,
+        USER_DELETED
+    }
+}
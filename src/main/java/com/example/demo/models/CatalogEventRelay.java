@@ -0,0 +1,23 @@
+package com.example.demo.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Последнее смещение, выданное событиям outbox. В таблице одна строка с id = 1.
+ */
+@Entity(name = "catalog_event_relay")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogEventRelay {
+    @Id
+    private Integer id;
+
+    @Column(name = "last_position", nullable = false)
+    private long lastPosition;
+}
@@ -0,0 +1,26 @@
+package com.example.demo.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Итоги по всему каталогу. В таблице одна строка с id = 1.
+ */
+@Entity(name = "catalog_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogStats {
+    @Id
+    private Integer id;
+
+    @Column(name = "total", nullable = false)
+    private long total;
+
+    @Column(name = "available", nullable = false)
+    private long available;
+}
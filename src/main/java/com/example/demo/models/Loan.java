@@ -0,0 +1,41 @@
+package com.example.demo.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Запись истории выдач: книга, пользователь, срок возврата и момент возврата (null, пока книга у пользователя).
+ * В PostgreSQL таблица секционирована по borrowed_at, см. V7__loans.sql.
+ */
+@Entity(name = "loans")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Loan {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loans_seq")
+    @SequenceGenerator(name = "loans_seq", sequenceName = "loans_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "borrowed_at", nullable = false)
+    private Instant borrowedAt;
+
+    @Column(name = "due_at", nullable = false)
+    private Instant dueAt;
+
+    @Column(name = "returned_at")
+    private Instant returnedAt;
+
+    @Column(name = "overdue", nullable = false)
+    private boolean overdue;
+}
@@ -1,5 +1,7 @@
 package com.example.demo.models;
 
+import com.example.demo.config.CacheConfig;
+import com.example.demo.config.ShardContext;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
@@ -7,15 +9,31 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 
 @Data
 @Entity(name = "Users")
+@Table(name = "users", indexes = @Index(name = User.EMAIL_INDEX, columnList = "email", unique = true))
 @NoArgsConstructor
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.USER_REGION)
 public class User {
+    /**
+     * Уникальный индекс email (миграция V4__users_email_unique.sql); по его имени нарушение
+     * уникальности отличается от прочих конфликтов данных.
+     */
+    public static final String EMAIL_INDEX = "users_email_uidx";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false)
@@ -27,7 +45,43 @@ public class User {
     @Column(name = "email", nullable = false)
     private String email;
 
+    /**
+     * Количество выданных пользователю книг. Меняется атомарными UPDATE или под блокировкой строки;
+     * UPDATE сущности (@DynamicUpdate) пишет лишь измененные поля, поэтому не затирает счетчик.
+     */
+    @Column(name = "borrowed_count", nullable = false)
+    private int borrowedCount;
+
+    /**
+     * Момент последней выдачи или возврата книги; при создании — момент создания.
+     * Пользователи, неактивные дольше заданного срока, удаляются UserService.deleteInactiveUsers.
+     */
+    @Column(name = "last_active_at", nullable = false)
+    private Instant lastActiveAt;
+
+    /**
+     * Филиал, к которому относится пользователь; определяет шард, в котором хранится строка.
+     */
+    @Column(name = "branch", nullable = false, updatable = false)
+    private String branch = ShardContext.DEFAULT_BRANCH;
+
     @JsonManagedReference
     @OneToMany(mappedBy = "user")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.USER_BOOKS_REGION)
     private List<Book> books;
+
+    @PrePersist
+    private void initialize() {
+        if (lastActiveAt == null) {
+            lastActiveAt = Instant.now();
+        }
+        normalizeEmail();
+    }
+
+    @PreUpdate
+    private void normalizeEmail() {
+        if (email != null) {
+            email = email.trim().toLowerCase(Locale.ROOT);
+        }
+    }
 }
@@ -0,0 +1,38 @@
+package com.example.demo.repositories;
+
+import com.example.demo.models.AuthorStats;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+
+public interface AuthorStatsRepository extends JpaRepository<AuthorStats, String> {
+
+    /**
+     * Создает нулевую строку автора, если ее еще нет. Безопасно при одновременных вставках.
+     * Затрагиваемая таблица указана явно: иначе Hibernate считает, что native-запрос мог изменить
+     * что угодно, и очищает все регионы кэша второго уровня.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "author_stats"))
+    @Query(value = "insert into author_stats (author, total, available) values (:author, 0, 0) " +
+            "on conflict do nothing", nativeQuery = true)
+    void ensureExists(@Param("author") String author);
+
+    @Modifying
+    @Query("update author_stats a set a.total = a.total + :total, a.available = a.available + :available " +
+            "where a.author = :author")
+    int add(@Param("author") String author, @Param("total") long total, @Param("available") long available);
+
+    /**
+     * Меняет число доступных книг автора указанной книги, не загружая саму книгу.
+     */
+    @Modifying
+    @Query("update author_stats a set a.available = a.available + :available " +
+            "where a.author = (select b.author from books b where b.id = :bookId)")
+    int addAvailableForBook(@Param("bookId") Long bookId, @Param("available") long available);
+}
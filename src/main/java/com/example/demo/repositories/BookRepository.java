@@ -1,11 +1,128 @@
 package com.example.demo.repositories;
 
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.BookView;
 import com.example.demo.models.Book;
-import com.example.demo.models.User;
+import com.example.demo.config.CacheConfig;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
 
+    @Query("select new com.example.demo.DTO.BookDTO(b.id, b.tittle, b.author, b.user.id) " +
+            "from books b where b.id > :after order by b.id")
+    List<BookDTO> findDtosAfter(@Param("after") Long after, Limit limit);
+
+    @Query("select new com.example.demo.DTO.BookDTO(b.id, b.tittle, b.author, b.user.id) " +
+            "from books b where b.branch = :branch and b.id > :after order by b.id")
+    List<BookDTO> findDtosAfterInBranch(@Param("branch") String branch, @Param("after") Long after, Limit limit);
+
+    @Query("select new com.example.demo.DTO.BookDTO(b.id, b.tittle, b.author, b.user.id) " +
+            "from books b order by b.id")
+    List<BookDTO> findAllDtos();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.example.demo.DTO.BookDTO(b.id, b.tittle, b.author, b.user.id) " +
+            "from books b order by b.id")
+    Stream<BookDTO> streamAllDtos();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.example.demo.DTO.BookDTO(b.id, b.tittle, b.author, b.user.id) " +
+            "from books b where b.branch = :branch order by b.id")
+    Stream<BookDTO> streamDtosInBranch(@Param("branch") String branch);
+
+    /**
+     * Полнотекстовый поиск по названию и автору через GIN-индекс books_search_vector_idx.
+     * Результаты упорядочены по релевантности (совпадения в названии весят больше, чем в авторе).
+     *
+     * @param tsQuery запрос в синтаксисе to_tsquery, например "war:* & peace:*".
+     */
+    @Query(value = "select b.id as id, b.tittle as tittle, b.author as author, b.user_id as userId " +
+            "from books b, to_tsquery('simple', :tsQuery) q " +
+            "where b.search_vector @@ q " +
+            "order by ts_rank(b.search_vector, q) desc, b.id " +
+            "limit :limit offset :offset", nativeQuery = true)
+    List<BookView> search(@Param("tsQuery") String tsQuery,
+                          @Param("limit") int limit,
+                          @Param("offset") long offset);
+
+    /**
+     * Выдает книгу пользователю, только если она свободна. Проверка и запись выполняются
+     * одним UPDATE, поэтому из нескольких одновременных выдач успешна ровно одна.
+     * Кэш второго уровня не сбрасывается: затронутые записи удаляет EntityCache.
+     *
+     * @return 1, если книга выдана, 0, если книга не найдена или уже выдана.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = CacheConfig.BULK_UPDATE_SPACE))
+    @Query(value = "update books set user_id = :userId, version = version + 1 " +
+            "where id = :bookId and user_id is null", nativeQuery = true)
+    int lendIfAvailable(@Param("bookId") Long bookId, @Param("userId") Long userId);
+
+    /**
+     * Возвращает книгу, только если она выдана указанному пользователю.
+     *
+     * @return 1, если книга возвращена, 0, если книга не найдена или выдана другому пользователю.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = CacheConfig.BULK_UPDATE_SPACE))
+    @Query(value = "update books set user_id = null, version = version + 1 " +
+            "where id = :bookId and user_id = :userId", nativeQuery = true)
+    int returnIfLentTo(@Param("bookId") Long bookId, @Param("userId") Long userId);
+
+    /**
+     * Освобождает книги одним UPDATE, без загрузки сущностей.
+     *
+     * @return число освобожденных книг.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = CacheConfig.BULK_UPDATE_SPACE))
+    @Query(value = "update books set user_id = null, version = version + 1 where id in (:ids)", nativeQuery = true)
+    int releaseAll(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Блокирует книги, выданные указанным пользователям, в порядке ID и возвращает их проекцию
+     * без загрузки сущностей.
+     */
+    @Query(value = "select b.id as id, b.tittle as tittle, b.author as author, b.user_id as userId " +
+            "from books b where b.user_id in (:userIds) order by b.id for update", nativeQuery = true)
+    List<BookView> lockLentTo(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Загружает книги одним запросом и блокирует их строки до конца транзакции.
+     * Строки блокируются в порядке ID, чтобы параллельные пакеты не попадали во взаимную блокировку.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from books b where b.id in :ids order by b.id")
+    List<Book> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Загружает книгу из базы в обход кэша второго уровня и блокирует ее строку до конца транзакции.
+     * Владелец и автор такой книги актуальны, поэтому из них можно считать изменения счетчиков.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "REFRESH"))
+    @Query("select b from books b where b.id = :id")
+    Optional<Book> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("select b.user.id from books b where b.id = :bookId")
+    Optional<Long> findOwnerId(@Param("bookId") Long bookId);
+
+    long countByUserIsNotNull();
 }
@@ -0,0 +1,17 @@
+package com.example.demo.repositories;
+
+import com.example.demo.models.CatalogEventRelay;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface CatalogEventRelayRepository extends JpaRepository<CatalogEventRelay, Integer> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from catalog_event_relay r where r.id = :id")
+    Optional<CatalogEventRelay> lockById(@Param("id") Integer id);
+}
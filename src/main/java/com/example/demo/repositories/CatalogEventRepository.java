@@ -0,0 +1,34 @@
+package com.example.demo.repositories;
+
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.models.CatalogEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface CatalogEventRepository extends JpaRepository<CatalogEvent, Long> {
+
+    /**
+     * Опубликованные события после смещения; id в DTO — смещение события (position).
+     */
+    @Query("select new com.example.demo.DTO.CatalogEventDTO(e.position, e.type, e.entityId, e.userId, e.createdAt) " +
+            "from catalog_events e where e.position > :after order by e.position")
+    List<CatalogEventDTO> findDtosAfter(@Param("after") Long after, Limit limit);
+
+    @Query("select coalesce(max(e.position), 0) from catalog_events e")
+    long findMaxPosition();
+
+    @Query("select e from catalog_events e where e.position is null order by e.id")
+    List<CatalogEvent> findUnpublished(Limit limit);
+
+    boolean existsByPositionIsNull();
+
+    @Modifying
+    @Query("delete from catalog_events e where e.createdAt < :cutoff and e.position is not null")
+    int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+}
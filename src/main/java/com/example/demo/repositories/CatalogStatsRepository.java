@@ -0,0 +1,15 @@
+package com.example.demo.repositories;
+
+import com.example.demo.models.CatalogStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CatalogStatsRepository extends JpaRepository<CatalogStats, Integer> {
+
+    @Modifying
+    @Query("update catalog_stats c set c.total = c.total + :total, c.available = c.available + :available " +
+            "where c.id = :id")
+    int add(@Param("id") Integer id, @Param("total") long total, @Param("available") long available);
+}
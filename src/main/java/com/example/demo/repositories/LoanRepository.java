@@ -0,0 +1,26 @@
+package com.example.demo.repositories;
+
+import com.example.demo.models.Loan;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface LoanRepository extends JpaRepository<Loan, Long> {
+
+    @Modifying
+    @Query("update loans l set l.returnedAt = :returnedAt where l.bookId in :bookIds and l.returnedAt is null")
+    int closeOpen(@Param("bookIds") Collection<Long> bookIds, @Param("returnedAt") Instant returnedAt);
+
+    @Query("select l.id from loans l where l.returnedAt is null and l.overdue = false and l.dueAt < :now order by l.dueAt")
+    List<Long> findOverdueIds(@Param("now") Instant now, Limit limit);
+
+    @Modifying
+    @Query("update loans l set l.overdue = true where l.id in :ids and l.returnedAt is null")
+    int markOverdue(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,94 @@
+package com.example.demo.repositories;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.config.ShardDatabaseClients;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Реактивные запросы каталога через R2DBC. Строки сразу отображаются в DTO, сущности JPA не участвуют.
+ * Запросы филиала и запросы по ID идут в шард, привязанный к потоку в момент их построения.
+ */
+@Repository
+public class ReactiveCatalogRepository {
+    private static final int FETCH_SIZE = 500;
+    private static final Comparator<BookDTO> BY_ID = Comparator.comparing(BookDTO::getId);
+
+    private final ShardDatabaseClients databaseClients;
+
+    @Autowired
+    public ReactiveCatalogRepository(ShardDatabaseClients databaseClients) {
+        this.databaseClients = databaseClients;
+    }
+
+    /**
+     * Книги всех филиалов с ID больше after в порядке возрастания ID. Строки читаются курсором по FETCH_SIZE
+     * и запрашиваются у базы по мере спроса подписчика; потоки шардов сливаются по ID.
+     */
+    @SuppressWarnings("unchecked")
+    public Flux<BookDTO> streamBooksAfter(long after) {
+        List<Flux<BookDTO>> shards = databaseClients.all().stream()
+                .map(client -> books(client.sql("select id, tittle, author, user_id from books " +
+                        "where id > :after order by id").bind("after", after)))
+                .toList();
+        return shards.size() == 1 ? shards.get(0) : Flux.mergeComparing(BY_ID, shards.toArray(Flux[]::new));
+    }
+
+    /**
+     * Книги филиала с ID больше after в порядке возрастания ID.
+     */
+    public Flux<BookDTO> streamBooksAfterInBranch(String branch, long after) {
+        return books(databaseClients.current().sql("select id, tittle, author, user_id from books " +
+                        "where branch = :branch and id > :after order by id")
+                .bind("branch", branch)
+                .bind("after", after));
+    }
+
+    /**
+     * Пользователь с выданными ему книгами одним запросом (LEFT JOIN).
+     *
+     * @return пользователь или пустой Mono, если пользователь не найден.
+     */
+    public Mono<UserDTO> findUserWithBooks(long id) {
+        return databaseClients.current().sql("select u.id, u.name, u.email, b.id as book_id, b.tittle, b.author " +
+                        "from users u left join books b on b.user_id = u.id where u.id = :id order by b.id")
+                .bind("id", id)
+                .map(row -> new UserRow(row.get("id", Long.class), row.get("name", String.class),
+                        row.get("email", String.class), row.get("book_id", Long.class),
+                        row.get("tittle", String.class), row.get("author", String.class)))
+                .all()
+                .collectList()
+                .filter(rows -> !rows.isEmpty())
+                .map(rows -> {
+                    UserRow first = rows.get(0);
+                    UserDTO user = new UserDTO(first.userId(), first.name(), first.email(), new ArrayList<>());
+                    rows.stream()
+                            .filter(row -> row.bookId() != null)
+                            .forEach(row -> user.getBooks().add(new BookDTO(row.bookId(), row.tittle(), row.author())));
+                    return user;
+                });
+    }
+
+    private static Flux<BookDTO> books(DatabaseClient.GenericExecuteSpec query) {
+        return query.filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(ReactiveCatalogRepository::toBookDTO)
+                .all();
+    }
+
+    private static BookDTO toBookDTO(Readable row) {
+        return new BookDTO(row.get("id", Long.class), row.get("tittle", String.class),
+                row.get("author", String.class), row.get("user_id", Long.class));
+    }
+
+    private record UserRow(Long userId, String name, String email, Long bookId, String tittle, String author) {
+    }
+}
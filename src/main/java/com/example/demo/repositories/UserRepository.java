@@ -1,8 +1,106 @@
 package com.example.demo.repositories;
 
+import com.example.demo.DTO.UserBookRow;
 import com.example.demo.models.User;
+import com.example.demo.config.CacheConfig;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    /**
+     * Читается в readOnly-транзакции, то есть с реплики, если она настроена. Загруженные сущности не кладутся
+     * в кэш второго уровня: отстающая реплика заменила бы в нем свежие записи прежними.
+     */
+    @EntityGraph(attributePaths = "books")
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "GET"))
+    Optional<User> findByEmail(String email);
+
+    @EntityGraph(attributePaths = "books")
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "GET"))
+    @Query("select u from Users u order by u.id")
+    List<User> findAllWithBooks();
+
+    @Query("select u.id from Users u where u.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select u.id from Users u where u.id > :after order by u.id")
+    List<Long> findIdsAfter(@Param("after") Long after, Limit limit);
+
+    @Query("select u.id from Users u where u.branch = :branch and u.id > :after order by u.id")
+    List<Long> findIdsAfterInBranch(@Param("branch") String branch, @Param("after") Long after, Limit limit);
+
+    @Query("select u.id as userId, u.name as name, u.email as email, " +
+            "b.id as bookId, b.tittle as tittle, b.author as author " +
+            "from Users u left join u.books b where u.id in :ids order by u.id, b.id")
+    List<UserBookRow> findRowsByUserIds(@Param("ids") Collection<Long> ids);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select u.id as userId, u.name as name, u.email as email, " +
+            "b.id as bookId, b.tittle as tittle, b.author as author " +
+            "from Users u left join u.books b order by u.id, b.id")
+    Stream<UserBookRow> streamAllRows();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select u.id as userId, u.name as name, u.email as email, " +
+            "b.id as bookId, b.tittle as tittle, b.author as author " +
+            "from Users u left join u.books b where u.branch = :branch order by u.id, b.id")
+    Stream<UserBookRow> streamRowsInBranch(@Param("branch") String branch);
+
+    @Query("select u.borrowedCount from Users u where u.id = :id")
+    Optional<Integer> findBorrowedCount(@Param("id") Long id);
+
+    @Query("select u.id from Users u where u.lastActiveAt < :cutoff order by u.lastActiveAt, u.id")
+    List<Long> findIdsInactiveSince(@Param("cutoff") Instant cutoff, Limit limit);
+
+    /**
+     * Увеличивает счетчик выданных книг, только если лимит еще не достигнут, и отмечает активность пользователя.
+     *
+     * @return 1, если счетчик увеличен, 0, если пользователь не найден или лимит исчерпан.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = CacheConfig.BULK_UPDATE_SPACE))
+    @Query(value = "update users set borrowed_count = borrowed_count + 1, last_active_at = :now " +
+            "where id = :id and borrowed_count < :max", nativeQuery = true)
+    int incrementBorrowedBelow(@Param("id") Long id, @Param("max") int max, @Param("now") Instant now);
+
+    /**
+     * Уменьшает счетчик выданных книг при возврате и отмечает активность пользователя.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = CacheConfig.BULK_UPDATE_SPACE))
+    @Query(value = "update users set borrowed_count = borrowed_count - 1, last_active_at = :now where id = :id",
+            nativeQuery = true)
+    int decrementBorrowed(@Param("id") Long id, @Param("now") Instant now);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = CacheConfig.BULK_UPDATE_SPACE))
+    @Query(value = "update users set borrowed_count = borrowed_count + :delta where id = :id", nativeQuery = true)
+    int addBorrowed(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * Загружает пользователей одним запросом и блокирует их строки до конца транзакции (в порядке ID).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from Users u where u.id in :ids order by u.id")
+    List<User> findAllForUpdate(@Param("ids") Collection<Long> ids);
 }
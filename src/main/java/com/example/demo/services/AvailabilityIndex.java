@@ -0,0 +1,337 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.AvailabilityDTO;
+import com.example.demo.DTO.AvailabilityIndexDTO;
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.config.ShardContext;
+import com.example.demo.models.CatalogEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс доступности книг в памяти процесса: сжатая битовая карта (Roaring) ID книг каждого автора,
+ * карта всех книг и карта свободных книг. Вопросы "сколько книг автора свободно" и "какие именно"
+ * решаются пересечением карт за микросекунды, без обращения к базе.
+ * <p>
+ * Индекс собирается из таблицы books при старте и по запросу ({@link #rebuild()}), а затем догоняет
+ * изменения по outbox каталога ({@link #catchUp()}): каждый экземпляр приложения читает опубликованные
+ * события своих шардов в порядке смещений и перечитывает из базы текущее состояние затронутых книг.
+ * Поэтому индекс видит изменения, сделанные любым экземпляром, не зависит от порядка завершения
+ * транзакций и не получает откаченных изменений. Индекс отстает от базы на интервалы публикации
+ * событий и app.availability-index.poll-interval.
+ * <p>
+ * ID книг хранятся как int: последовательность books_seq не выходит за пределы 2^31 - 1.
+ */
+@Component
+public class AvailabilityIndex {
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityIndex.class);
+    private static final String QUERY = "select id, author, user_id from books";
+    private static final String REFRESH_QUERY = "select id, author, user_id from books where id in (:ids)";
+    private static final Set<CatalogEvent.Type> BOOK_EVENTS = EnumSet.of(CatalogEvent.Type.BOOK_CREATED,
+            CatalogEvent.Type.BOOK_UPDATED, CatalogEvent.Type.BOOK_DELETED,
+            CatalogEvent.Type.BOOK_LENT, CatalogEvent.Type.BOOK_RETURNED);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final CatalogShards catalogShards;
+    private final CatalogEventService catalogEventService;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Long> offsets = new HashMap<>();
+    private Bitmaps bitmaps = new Bitmaps();
+    private Instant builtAt;
+    private long buildMillis;
+
+    @Autowired
+    public AvailabilityIndex(DataSource dataSource,
+                             CatalogShards catalogShards,
+                             CatalogEventService catalogEventService,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry registry,
+                             @Value("${app.availability-index.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.catalogShards = catalogShards;
+        this.catalogEventService = catalogEventService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        Gauge.builder("library.availability.index.size", this, index -> index.report().getSizeInBytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Возвращает число всех и свободных книг любого из авторов.
+     *
+     * @param authors авторы; пустой список означает весь каталог.
+     * @return счетчики; author заполнен, только если запрошен один автор.
+     */
+    public AvailabilityDTO count(Collection<String> authors) {
+        String author = authors.size() == 1 ? authors.iterator().next() : null;
+        lock.readLock().lock();
+        try {
+            RoaringBitmap books = authors.isEmpty() ? bitmaps.all : union(authors);
+            return new AvailabilityDTO(author, books.getLongCardinality(),
+                    RoaringBitmap.andCardinality(books, bitmaps.available));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает ID свободных книг любого из авторов по возрастанию, начиная после курсора.
+     *
+     * @param authors авторы; пустой список означает весь каталог.
+     * @param after   ID последней книги предыдущей страницы или null для первой страницы.
+     * @param size    запрошенный размер страницы (ограничивается CursorPageDTO.MAX_SIZE).
+     * @return страница ID и курсор для следующего запроса (null, если книг больше нет).
+     */
+    public CursorPageDTO<Long> findAvailable(Collection<String> authors, Long after, Integer size) {
+        int pageSize = CursorPageDTO.clampSize(size);
+        List<Long> ids = new ArrayList<>(pageSize + 1);
+        lock.readLock().lock();
+        try {
+            PeekableIntIterator iterator = intersect(authors).getIntIterator();
+            if (after != null) {
+                iterator.advanceIfNeeded((int) Math.min(Math.max(after + 1, 0), Integer.MAX_VALUE));
+            }
+            while (iterator.hasNext() && ids.size() <= pageSize) {
+                ids.add(Integer.toUnsignedLong(iterator.next()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return CursorPageDTO.of(ids, pageSize, Long::valueOf);
+    }
+
+    /**
+     * Возвращает размер индекса и время последней сборки.
+     */
+    public AvailabilityIndexDTO report() {
+        lock.readLock().lock();
+        try {
+            long sizeInBytes = bitmaps.all.getLongSizeInBytes() + bitmaps.available.getLongSizeInBytes();
+            for (RoaringBitmap books : bitmaps.byAuthor.values()) {
+                sizeInBytes += books.getLongSizeInBytes();
+            }
+            return new AvailabilityIndexDTO(bitmaps.all.getLongCardinality(), bitmaps.available.getLongCardinality(),
+                    bitmaps.byAuthor.size(), sizeInBytes, builtAt, buildMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Собирает индекс заново из таблицы books всех шардов (курсором JDBC) и заменяет им текущий.
+     * Запросы во время сборки обслуживаются прежним индексом. Смещение outbox каждого шарда запоминается
+     * до чтения таблицы: события, опубликованные позже, повторно применяются к новому индексу.
+     * Смещения, события и книги читаются из основной базы: реплика может отставать от смещений.
+     *
+     * @return состояние нового индекса.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized AvailabilityIndexDTO rebuild() {
+        long started = System.nanoTime();
+        Map<String, Long> rebuiltOffsets = new HashMap<>();
+        Bitmaps rebuilt = new Bitmaps();
+        catalogShards.forEachShard(() -> {
+            transactionTemplate.executeWithoutResult(status -> {
+                rebuiltOffsets.put(ShardContext.currentShard(), catalogEventService.latestId());
+                jdbcTemplate.query(QUERY, rs -> {
+                    rs.getLong(3);
+                    boolean free = rs.wasNull();
+                    rebuilt.add(key(rs.getLong(1)), rs.getString(2), free);
+                });
+            });
+        });
+        rebuilt.runOptimize();
+
+        lock.writeLock().lock();
+        try {
+            bitmaps = rebuilt;
+            builtAt = Instant.now();
+            buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        offsets.clear();
+        offsets.putAll(rebuiltOffsets);
+        catchUp();
+        AvailabilityIndexDTO report = report();
+        log.info("Availability index built: {} books, {} authors, {} bytes in {} ms",
+                report.getBooks(), report.getAuthors(), report.getSizeInBytes(), report.getBuildMillis());
+        return report;
+    }
+
+    /**
+     * Применяет опубликованные события книг всех шардов после запомненных смещений: затронутые книги
+     * перечитываются из базы и заменяют свои записи в индексе. До первой сборки ничего не делает.
+     *
+     * @return число прочитанных событий.
+     */
+    @Scheduled(fixedDelayString = "${app.availability-index.poll-interval:PT2S}",
+            initialDelayString = "${app.availability-index.poll-interval:PT2S}")
+    public synchronized int catchUp() {
+        if (offsets.isEmpty()) {
+            return 0;
+        }
+        return catalogShards.sumOverShards(this::catchUpInShard);
+    }
+
+    private int catchUpInShard() {
+        String shard = ShardContext.currentShard();
+        long offset = offsets.getOrDefault(shard, 0L);
+        int read = 0;
+        List<CatalogEventDTO> events;
+        do {
+            long after = offset;
+            events = transactionTemplate.execute(status -> catalogEventService.findAfter(after, CursorPageDTO.MAX_SIZE));
+            if (events.isEmpty()) {
+                break;
+            }
+            Set<Long> bookIds = new LinkedHashSet<>();
+            for (CatalogEventDTO event : events) {
+                if (BOOK_EVENTS.contains(event.getType())) {
+                    bookIds.add(event.getEntityId());
+                }
+            }
+            refresh(bookIds);
+            offset = events.get(events.size() - 1).getId();
+            offsets.put(shard, offset);
+            read += events.size();
+        } while (events.size() == CursorPageDTO.MAX_SIZE);
+        return read;
+    }
+
+    /**
+     * Перечитывает книги из базы текущего шарда и заменяет их записи; отсутствующие в базе книги удаляются.
+     */
+    private void refresh(Set<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Row> rows = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> namedJdbcTemplate.query(REFRESH_QUERY,
+                Map.of("ids", bookIds), rs -> {
+                    rs.getLong(3);
+                    boolean free = rs.wasNull();
+                    rows.put(key(rs.getLong(1)), new Row(rs.getString(2), free));
+                }));
+        lock.writeLock().lock();
+        try {
+            for (Long bookId : bookIds) {
+                int id = key(bookId);
+                Row row = rows.get(id);
+                bitmaps.refresh(id, row == null ? null : row.author(), row != null && row.free());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private RoaringBitmap intersect(Collection<String> authors) {
+        return authors.isEmpty() ? bitmaps.available : RoaringBitmap.and(union(authors), bitmaps.available);
+    }
+
+    private RoaringBitmap union(Collection<String> authors) {
+        List<RoaringBitmap> books = new ArrayList<>(authors.size());
+        for (String author : authors) {
+            RoaringBitmap bitmap = bitmaps.byAuthor.get(author);
+            if (bitmap != null) {
+                books.add(bitmap);
+            }
+        }
+        return books.size() == 1 ? books.get(0) : FastAggregation.or(books.iterator());
+    }
+
+    private static int key(Long bookId) {
+        return Math.toIntExact(bookId);
+    }
+
+    private record Row(String author, boolean free) {
+    }
+
+    /**
+     * Битовые карты индекса; изменяются только под блокировкой записи.
+     */
+    private static final class Bitmaps {
+        private final Map<String, RoaringBitmap> byAuthor = new HashMap<>();
+        private final RoaringBitmap all = new RoaringBitmap();
+        private final RoaringBitmap available = new RoaringBitmap();
+
+        private void add(int id, String author, boolean free) {
+            byAuthor.computeIfAbsent(author, key -> new RoaringBitmap()).add(id);
+            all.add(id);
+            if (free) {
+                available.add(id);
+            } else {
+                available.remove(id);
+            }
+        }
+
+        /**
+         * Заменяет запись книги текущим состоянием из базы.
+         *
+         * @param author автор книги или null, если книги больше нет.
+         */
+        private void refresh(int id, String author, boolean free) {
+            RoaringBitmap books = author == null ? null : byAuthor.get(author);
+            if (all.contains(id) && (books == null || !books.contains(id))) {
+                // книга удалена или сменила автора: прежний автор неизвестен, ищем ее в картах авторов
+                Iterator<RoaringBitmap> authors = byAuthor.values().iterator();
+                while (authors.hasNext()) {
+                    RoaringBitmap other = authors.next();
+                    if (other.checkedRemove(id)) {
+                        if (other.isEmpty()) {
+                            authors.remove();
+                        }
+                        break;
+                    }
+                }
+            }
+            if (author == null) {
+                all.remove(id);
+                available.remove(id);
+            } else {
+                add(id, author, free);
+            }
+        }
+
+        private void runOptimize() {
+            byAuthor.values().forEach(RoaringBitmap::runOptimize);
+            all.runOptimize();
+            available.runOptimize();
+        }
+    }
+}
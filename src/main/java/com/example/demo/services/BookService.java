@@ -1,44 +1,182 @@
 package com.example.demo.services;
 
+import com.example.demo.DTO.AvailabilityDTO;
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.config.CacheConfig;
+import com.example.demo.config.ShardContext;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.BorrowLimitExceededException;
 import com.example.demo.exception.UserNotFoundException;
 import com.example.demo.models.Book;
+import com.example.demo.models.CatalogEvent;
 import com.example.demo.models.User;
 import com.example.demo.repositories.BookRepository;
 import com.example.demo.repositories.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("library.service")
 public class BookService {
+    private static final int MAX_SEARCH_TERMS = 8;
+    /**
+     * Более короткие слова не ищутся: префикс из одной буквы совпадает с большей частью индекса.
+     */
+    static final int MIN_SEARCH_TERM_LENGTH = 2;
+    /**
+     * Последняя доступная страница поиска: OFFSET глубже заставляет базу ранжировать и пропускать
+     * слишком много строк, для перебора каталога есть постраничное чтение по курсору.
+     */
+    static final int MAX_SEARCH_PAGE = 20;
+
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
+    private final CatalogCache catalogCache;
+    private final CatalogEventService catalogEventService;
+    private final LendingCounters lendingCounters;
+    private final LoanService loanService;
+    private final CatalogShards catalogShards;
 
     @Autowired
-    public BookService(BookRepository bookRepository, UserRepository userRepository) {
+    public BookService(BookRepository bookRepository, UserRepository userRepository,
+                       CatalogCache catalogCache, CatalogEventService catalogEventService,
+                       LendingCounters lendingCounters, LoanService loanService,
+                       CatalogShards catalogShards) {
         this.bookRepository = bookRepository;
         this.userRepository = userRepository;
+        this.catalogCache = catalogCache;
+        this.catalogEventService = catalogEventService;
+        this.lendingCounters = lendingCounters;
+        this.loanService = loanService;
+        this.catalogShards = catalogShards;
     }
 
     /**
-     * Возвращает список всех книг.
+     * Возвращает список всех книг. Книги выбираются проекцией сразу в BookDTO, без загрузки сущностей.
      *
      * @return список всех книг.
      */
-    public List<Book> findAll() {
-        return bookRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<BookDTO> findAll() {
+        return bookRepository.findAllDtos();
+    }
+
+    /**
+     * Возвращает страницу книг, упорядоченных по ID, начиная после указанного курсора.
+     * Если филиал запроса задан, в страницу попадают только его книги; иначе книги всех филиалов,
+     * собранные со всех шардов.
+     *
+     * @param after ID последней книги предыдущей страницы или null для первой страницы.
+     * @param size  запрошенный размер страницы (ограничивается CursorPageDTO.MAX_SIZE).
+     * @return страница книг и курсор для следующего запроса (null, если книг больше нет).
+     */
+    public CursorPageDTO<BookDTO> findPage(Long after, Integer size) {
+        int pageSize = CursorPageDTO.clampSize(size);
+        long from = after == null ? 0L : after;
+        return catalogShards.findPage(pageSize,
+                branch -> bookRepository.findDtosAfterInBranch(branch, from, Limit.of(pageSize + 1)),
+                () -> bookRepository.findDtosAfter(from, Limit.of(pageSize + 1)),
+                BookDTO::getId);
+    }
+
+    /**
+     * Последовательно передает все книги филиала (или всех филиалов, шард за шардом) потребителю,
+     * читая проекцию через курсор JDBC. Сущности не загружаются, поэтому расход памяти не зависит
+     * от размера таблицы.
+     *
+     * @param branch   филиал или null для всех филиалов.
+     * @param consumer обработчик, вызываемый для каждой книги в порядке возрастания ID внутри шарда.
+     */
+    public void streamAll(String branch, Consumer<BookDTO> consumer) {
+        catalogShards.readShards(branch, inBranch -> {
+            try (Stream<BookDTO> books = inBranch == null
+                    ? bookRepository.streamAllDtos()
+                    : bookRepository.streamDtosInBranch(inBranch)) {
+                books.forEach(consumer);
+            }
+        });
+    }
+
+    /**
+     * Ищет книги по словам из названия и автора. Каждое слово запроса сопоставляется
+     * как префикс ("tolk" находит "Tolkien"), все слова должны присутствовать.
+     *
+     * @param query строка поиска.
+     * @param page  номер страницы, начиная с 0, не больше MAX_SEARCH_PAGE.
+     * @param size  запрошенный размер страницы (ограничивается CursorPageDTO.MAX_SIZE).
+     * @return книги, упорядоченные по релевантности; пустой список, если в запросе нет слов
+     *         длиной от MIN_SEARCH_TERM_LENGTH символов.
+     * @throws BadRequestException если page больше MAX_SEARCH_PAGE.
+     */
+    @Transactional(readOnly = true)
+    public List<BookDTO> search(String query, int page, Integer size) {
+        if (page > MAX_SEARCH_PAGE) {
+            throw new BadRequestException("page must not exceed " + MAX_SEARCH_PAGE);
+        }
+        String tsQuery = toTsQuery(query);
+        if (tsQuery.isEmpty()) {
+            return List.of();
+        }
+        int pageSize = CursorPageDTO.clampSize(size);
+        return bookRepository.search(tsQuery, pageSize, (long) Math.max(page, 0) * pageSize).stream()
+                .map(book -> new BookDTO(book.getId(), book.getTittle(), book.getAuthor(), book.getUserId()))
+                .collect(Collectors.toList());
     }
 
     /**
-     * Находит книгу по ее ID.
+     * Строит запрос to_tsquery из слов строки поиска: слова короче MIN_SEARCH_TERM_LENGTH отбрасываются,
+     * остальные (не больше MAX_SEARCH_TERMS) становятся префиксами, соединенными через "&".
+     * Разделителями считаются все символы, кроме букв и цифр, поэтому операторы tsquery в запрос не попадают.
+     *
+     * @return запрос, например "war:* & peace:*", или пустая строка, если подходящих слов нет.
+     */
+    static String toTsQuery(String query) {
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> term.length() >= MIN_SEARCH_TERM_LENGTH)
+                .limit(MAX_SEARCH_TERMS)
+                .map(term -> term + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    /**
+     * Возвращает число всех и доступных книг по поддерживаемым счетчикам, без подсчета строк books.
+     *
+     * @param author автор или null для итогов по всему каталогу.
+     * @return счетчики; нули для неизвестного автора.
+     */
+    public AvailabilityDTO availability(String author) {
+        return author == null ? lendingCounters.catalogAvailability() : lendingCounters.authorAvailability(author);
+    }
+
+    /**
+     * Находит книгу по ее ID. Сущность читается через кэш второго уровня, поэтому повторный поиск
+     * не обращается к базе, пока книга не изменилась; владелец берется из ссылки без загрузки пользователя.
+     * Книга читается из шарда, выдавшего ее ID, независимо от филиала запроса, в транзакции без readOnly,
+     * то есть из основной базы: прочитанное отсюда попадает в кэши на весь TTL, а отстающая реплика
+     * сразу после записи вернула бы прежнюю версию книги.
      *
      * @param id идентификатор книги.
-     * @return объект Book, если книга найдена, или null, если книга не найдена.
+     * @return объект BookDTO, если книга найдена, или null, если книга не найдена.
      */
-    public Book findById(Long id) {
-        return bookRepository.findById(id).orElse(null);
+    @Cacheable(cacheNames = CacheConfig.BOOKS, key = "#id", unless = "#result == null")
+    public BookDTO findById(Long id) {
+        return catalogShards.findById(id, () -> bookRepository.findById(id)
+                .map(book -> new BookDTO(book.getId(), book.getTittle(), book.getAuthor(), ownerId(book)))
+                .orElse(null));
     }
 
     /**
@@ -47,32 +185,56 @@ public class BookService {
      * @param title  название книги.
      * @param author автор книги.
      * @param userId идентификатор пользователя, к которому будет привязана книга.
-     * @return созданный объект Book.
-     * @throws UserNotFoundException если пользователь с указанным ID не найден.
+     * @return объект BookDTO созданной книги.
+     * @throws UserNotFoundException       если пользователь с указанным ID не найден.
+     * @throws BorrowLimitExceededException если у пользователя уже максимальное число книг.
      */
-    public Book createBook(String title, String author, Long userId) {
+    @Transactional
+    public BookDTO createBook(String title, String author, Long userId) {
         Book book = new Book();
         book.setTittle(title);
         book.setAuthor(author);
+        book.setBranch(ShardContext.currentBranch());
 
         if(userId != null) {
             User user = userRepository.findById(userId)
                     .orElseThrow(() -> new UserNotFoundException("User not found"));
+            lendingCounters.borrow(userId);
             book.setUser(user);
         }
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        lendingCounters.apply(author, 1, userId == null ? 1 : 0);
+        if (userId != null) {
+            loanService.lent(savedBook.getId(), userId);
+        }
+        catalogEventService.record(CatalogEvent.Type.BOOK_CREATED, savedBook.getId(), userId);
+        catalogCache.evictUser(userId);
+        return new BookDTO(savedBook.getId(), savedBook.getTittle(), savedBook.getAuthor(), userId);
     }
 
     /**
-     * Удаляет книгу по ее ID.
+     * Удаляет книгу по ее ID. Книга читается из базы под блокировкой, в обход кэша второго уровня:
+     * по ее владельцу и автору исправляются счетчики, а запись в кэше может быть устаревшей.
      *
      * @param id идентификатор книги, которую нужно удалить.
      * @return true, если книга была успешно удалена, и false, если книга не найдена.
      */
+    @Transactional
     public boolean deleteBook(Long id) {
-        Optional<Book> book = bookRepository.findById(id);
+        Optional<Book> book = bookRepository.findByIdForUpdate(id);
         if(book.isPresent()) {
+            Long ownerId = ownerId(book.get());
             bookRepository.delete(book.get());
+            if (ownerId != null) {
+                lendingCounters.addBorrowed(ownerId, -1);
+            }
+            lendingCounters.apply(book.get().getAuthor(), -1, ownerId == null ? -1 : 0);
+            if (ownerId != null) {
+                loanService.returned(id);
+            }
+            catalogEventService.record(CatalogEvent.Type.BOOK_DELETED, id, ownerId);
+            catalogCache.evictBook(id);
+            catalogCache.evictUser(ownerId(book.get()));
             return true;
         } else {
             return false;
@@ -80,23 +242,38 @@ public class BookService {
     }
 
     /**
-     * Обновляет информацию о книге.
+     * Обновляет информацию о книге. Книга читается из базы под блокировкой, в обход кэша второго уровня:
+     * по ее прежнему автору и владельцу исправляются счетчики доступности.
      *
      * @param id     идентификатор книги, которую нужно обновить.
      * @param title  новое название книги.
      * @param author новый автор книги.
      * @return true, если книга была успешно обновлена, и false, если книга не найдена.
      */
+    @Transactional
     public boolean updateBook(Long id, String title, String author) {
-        Optional<Book> book = bookRepository.findById(id);
+        Optional<Book> book = bookRepository.findByIdForUpdate(id);
         if(book.isPresent()) {
+            String previousAuthor = book.get().getAuthor();
             book.get().setTittle(title);
             book.get().setAuthor(author);
             bookRepository.save(book.get());
+            if (!previousAuthor.equals(author)) {
+                long available = ownerId(book.get()) == null ? 1 : 0;
+                lendingCounters.apply(Map.of(
+                        previousAuthor, new LendingCounters.Delta(-1, -available),
+                        author, new LendingCounters.Delta(1, available)));
+            }
+            catalogEventService.record(CatalogEvent.Type.BOOK_UPDATED, id, ownerId(book.get()));
+            catalogCache.evictBook(id);
+            catalogCache.evictUser(ownerId(book.get()));
             return true;
         } else {
             return false;
         }
     }
 
+    private Long ownerId(Book book) {
+        return book.getUser() == null ? null : book.getUser().getId();
+    }
 }
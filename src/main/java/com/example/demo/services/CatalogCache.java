@@ -0,0 +1,253 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.config.CacheConfig;
+import com.example.demo.config.ShardContext;
+import com.example.demo.models.CatalogEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Инвалидация кэшей книг и пользователей при изменениях каталога. Записи удаляются после коммита
+ * транзакции изменения: удаленную до коммита запись параллельный запрос успел бы снова заполнить
+ * еще не измененными данными, и она оставалась бы устаревшей до истечения TTL.
+ * <p>
+ * ETag ответов строится из общего для всех экземпляров состояния — смещений опубликованных событий outbox
+ * всех шардов, которые только растут: пока они не изменились, клиент с If-None-Match получает 304 без обращения
+ * к базе, и одинаковое состояние каталога дает одинаковый ETag на любом экземпляре за балансировщиком.
+ * Ответы зависят от филиала запроса, поэтому ETag включает и филиал (или "*" для запроса без заголовка
+ * филиала): If-None-Match с ETag другого филиала не дает 304.
+ * <p>
+ * Изменения, сделанные другими экземплярами приложения, локальных записей не удаляют. Поэтому каждый экземпляр
+ * раз в app.catalog-cache.poll-interval читает опубликованные события outbox всех шардов после запомненных
+ * смещений, удаляет затронутые ими книги и пользователей из своего кэша и из кэша второго уровня Hibernate
+ * и только затем запоминает новые смещения. Чужое изменение меняет ETag не позже чем через интервалы публикации
+ * событий и опроса, и к этому моменту устаревших записей в кэшах экземпляра уже нет.
+ * <p>
+ * Свое изменение должно менять ETag сразу после коммита, раньше публикации его события. Для этого каждое
+ * изменение увеличивает локальную версию, и пока не все свои изменения опубликованы и прочитаны опросом,
+ * к ETag добавляются версия и случайная эпоха процесса (после перезапуска такие ETag гарантированно
+ * не совпадут). Когда опрос убеждается, что неопубликованных событий нет, ETag снова состоит только
+ * из общих смещений.
+ * <p>
+ * Версия увеличивается после коммита транзакции изменения: до коммита другие запросы
+ * еще читают прежние данные, и новый ETag достался бы старому содержимому. Увеличение выполняется
+ * последним, после удаления всех записей кэша этой транзакции: иначе запрос между ними получил бы
+ * новый ETag вместе с устаревшей записью.
+ */
+@Component
+public class CatalogCache {
+    private static final int EVICT_ORDER = Ordered.LOWEST_PRECEDENCE - 1;
+    private static final int VERSION_ORDER = Ordered.LOWEST_PRECEDENCE;
+    private static final Set<CatalogEvent.Type> USER_EVENTS = EnumSet.of(CatalogEvent.Type.USER_CREATED,
+            CatalogEvent.Type.USER_UPDATED, CatalogEvent.Type.USER_DELETED);
+
+    private final CacheManager cacheManager;
+    private final EntityCache entityCache;
+    private final CatalogShards catalogShards;
+    private final CatalogEventService catalogEventService;
+    private final TransactionTemplate transactionTemplate;
+    private final long epoch = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * Локальная версия, все изменения до которой опубликованы и прочитаны опросом; -1 до первого опроса.
+     */
+    private final AtomicLong publishedVersion = new AtomicLong(-1);
+    private final Map<String, Long> positions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CatalogCache(CacheManager cacheManager,
+                        EntityCache entityCache,
+                        CatalogShards catalogShards,
+                        CatalogEventService catalogEventService,
+                        PlatformTransactionManager transactionManager) {
+        this.cacheManager = cacheManager;
+        this.entityCache = entityCache;
+        this.catalogShards = catalogShards;
+        this.catalogEventService = catalogEventService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Удаляет книгу из кэша.
+     *
+     * @param bookId идентификатор книги; null игнорируется.
+     */
+    public void evictBook(Long bookId) {
+        evict(CacheConfig.BOOKS, bookId);
+    }
+
+    /**
+     * Удаляет пользователя (вместе с его списком книг) из кэша.
+     *
+     * @param userId идентификатор пользователя; null игнорируется.
+     */
+    public void evictUser(Long userId) {
+        evict(CacheConfig.USERS, userId);
+    }
+
+    /**
+     * Отмечает изменение каталога, не затрагивающее конкретные записи кэша (например, массовую загрузку).
+     */
+    public void markChanged() {
+        afterCommit(VERSION_ORDER, version::incrementAndGet);
+    }
+
+    /**
+     * Возвращает ETag текущей версии каталога для филиала текущего потока. Значение нужно получать
+     * до чтения данных, чтобы ответ никогда не получил ETag более новый, чем его содержимое.
+     * ETag слабый: Tomcat не сжимает ответы с сильным ETag, а If-None-Match
+     * все равно сравнивает значения по слабому правилу.
+     */
+    public String etag() {
+        // версии читаются раньше смещений: совпавшие версии означают, что смещения уже учитывают свои изменения
+        long published = publishedVersion.get();
+        long current = version.get();
+        long positionsSum = 0;
+        for (long position : positions.values()) {
+            positionsSum += position;
+        }
+        // "*" не проходит проверку имени филиала, поэтому не совпадает ни с одним филиалом
+        String scope = ShardContext.isBranchBound() ? ShardContext.currentBranch() : "*";
+        if (current == published) {
+            return "W/\"" + scope + "-" + positionsSum + "\"";
+        }
+        return "W/\"" + scope + "-" + positionsSum + "-" + Long.toHexString(epoch) + "-" + current + "\"";
+    }
+
+    /**
+     * Применяет опубликованные события всех шардов после запомненных смещений: книги и пользователи,
+     * затронутые событиями (в том числе изменениями других экземпляров), удаляются из кэша и из кэша
+     * второго уровня, после чего смещение шарда сдвигается. События и смещения читаются из основной базы
+     * (реплика может отставать). При первом опросе шарда событий для него еще не прочитано: смещение
+     * берется текущим, а кэши очищаются целиком, чтобы в них не осталось записей, изменившихся до опроса.
+     * Если ни в одном шарде не было неопубликованных событий, все свои изменения, зафиксированные до начала
+     * опроса, уже учтены в смещениях, и ETag перестает включать локальную версию.
+     */
+    @Scheduled(fixedDelayString = "${app.catalog-cache.poll-interval:PT2S}",
+            initialDelayString = "${app.catalog-cache.poll-interval:PT2S}")
+    public synchronized void refreshPositions() {
+        long seen = version.get();
+        int pendingShards = catalogShards.sumOverShards(() -> catchUpInShard() ? 0 : 1);
+        if (pendingShards == 0) {
+            publishedVersion.accumulateAndGet(seen, Math::max);
+        }
+    }
+
+    /**
+     * @return true, если в начале чтения в шарде не было неопубликованных событий.
+     */
+    private boolean catchUpInShard() {
+        String shard = ShardContext.currentShard();
+        // проверяется до чтения событий: события, опубликованные к этому моменту, будут прочитаны ниже
+        boolean allPublished = !transactionTemplate.execute(status -> catalogEventService.hasUnpublished());
+        Long position = positions.get(shard);
+        if (position == null) {
+            // смещение читается до очистки: записи, положенные в кэш после нее, не старше событий до смещения
+            long latest = transactionTemplate.execute(status -> catalogEventService.latestId());
+            clearAll();
+            positions.put(shard, latest);
+            return allPublished;
+        }
+        List<CatalogEventDTO> events;
+        do {
+            long after = position;
+            events = transactionTemplate.execute(status -> catalogEventService.findAfter(after, CursorPageDTO.MAX_SIZE));
+            if (events.isEmpty()) {
+                break;
+            }
+            for (CatalogEventDTO event : events) {
+                evictChanged(event);
+            }
+            position = events.get(events.size() - 1).getId();
+            positions.put(shard, position);
+        } while (events.size() == CursorPageDTO.MAX_SIZE);
+        return allPublished;
+    }
+
+    /**
+     * Удаляет из кэшей запись, затронутую событием, и запись пользователя, указанного в событии книги.
+     */
+    private void evictChanged(CatalogEventDTO event) {
+        if (USER_EVENTS.contains(event.getType())) {
+            evictUserNow(event.getEntityId());
+            return;
+        }
+        evictNow(CacheConfig.BOOKS, event.getEntityId());
+        entityCache.evictBook(event.getEntityId());
+        evictUserNow(event.getUserId());
+    }
+
+    private void evictUserNow(Long userId) {
+        if (userId != null) {
+            evictNow(CacheConfig.USERS, userId);
+            entityCache.evictUser(userId);
+            entityCache.evictUserBooks(userId);
+        }
+    }
+
+    private void evictNow(String cacheName, Long key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clearAll() {
+        for (String cacheName : List.of(CacheConfig.BOOKS, CacheConfig.USERS)) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+        entityCache.evictAll();
+    }
+
+    /**
+     * Выполняет действие после коммита текущей транзакции (или сразу, если транзакции нет).
+     * После отката действие не выполняется. Действия с меньшим order выполняются раньше,
+     * с равным — в порядке регистрации.
+     */
+    private static void afterCommit(int order, Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+
+            @Override
+            public int getOrder() {
+                return order;
+            }
+        });
+    }
+
+    private void evict(String cacheName, Long key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            afterCommit(EVICT_ORDER, () -> cache.evict(key));
+        }
+        markChanged();
+    }
+}
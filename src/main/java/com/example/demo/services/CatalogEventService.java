@@ -0,0 +1,160 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.models.CatalogEvent;
+import com.example.demo.models.CatalogEventRelay;
+import com.example.demo.repositories.CatalogEventRelayRepository;
+import com.example.demo.repositories.CatalogEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Transactional outbox каталога. Каждое изменение книги или пользователя записывает
+ * событие в той же транзакции, поэтому событие появляется тогда и только тогда,
+ * когда изменение зафиксировано.
+ * <p>
+ * Идентификаторы событий выдаются последовательностью до коммита, и транзакции могут
+ * фиксироваться не в порядке id. Поэтому читатели видят события не по id, а по смещению,
+ * которое назначает ретранслятор ({@link #publish()}) уже зафиксированным событиям.
+ * Ретрансляторы всех экземпляров работают по очереди под блокировкой строки catalog_event_relay,
+ * так что смещения растут в порядке публикации, и смещение потребителя не перескочит событие
+ * транзакции, зафиксированной позже, как бы долго она ни шла.
+ * <p>
+ * При шардировании у каждого шарда свой outbox и свои смещения: события читаются из шарда
+ * филиала запроса, а публикация и очистка обходят все шарды.
+ */
+@Service
+public class CatalogEventService {
+    private static final int RELAY = 1;
+
+    private final CatalogEventRepository catalogEventRepository;
+    private final CatalogEventRelayRepository catalogEventRelayRepository;
+    private final CatalogShards catalogShards;
+    private final TransactionTemplate transactionTemplate;
+    private final int publishBatchSize;
+    private final Duration retention;
+
+    @Autowired
+    public CatalogEventService(CatalogEventRepository catalogEventRepository,
+                               CatalogEventRelayRepository catalogEventRelayRepository,
+                               CatalogShards catalogShards,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.outbox.publish-batch-size:500}") int publishBatchSize,
+                               @Value("${app.outbox.retention:7d}") Duration retention) {
+        this.catalogEventRepository = catalogEventRepository;
+        this.catalogEventRelayRepository = catalogEventRelayRepository;
+        this.catalogShards = catalogShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publishBatchSize = publishBatchSize;
+        this.retention = retention;
+    }
+
+    /**
+     * Записывает событие в текущую транзакцию изменения.
+     *
+     * @param type     тип изменения.
+     * @param entityId ID книги (для событий BOOK_*) или пользователя (для USER_*).
+     * @param userId   ID пользователя, которому выдана или от которого возвращена книга; для BOOK_CREATED,
+     *                 BOOK_UPDATED и BOOK_DELETED — владелец книги (null, если книга свободна); null для событий USER_*.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(CatalogEvent.Type type, Long entityId, Long userId) {
+        catalogEventRepository.save(new CatalogEvent(null, type, entityId, userId, Instant.now(), null));
+    }
+
+    /**
+     * Назначает смещения зафиксированным, еще не опубликованным событиям в порядке id,
+     * не больше app.outbox.publish-batch-size за вызов в каждом шарде.
+     *
+     * @return число опубликованных событий.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.publish-interval:PT1S}",
+            initialDelayString = "${app.outbox.publish-interval:PT1S}")
+    public int publish() {
+        return catalogShards.sumOverShards(() -> transactionTemplate.execute(status -> publishInShard()));
+    }
+
+    private int publishInShard() {
+        Optional<CatalogEventRelay> relay = catalogEventRelayRepository.lockById(RELAY);
+        if (relay.isEmpty()) {
+            return 0;
+        }
+        // после ожидания блокировки запрос видит все, что успели опубликовать другие ретрансляторы
+        List<CatalogEvent> events = catalogEventRepository.findUnpublished(Limit.of(publishBatchSize));
+        long position = relay.get().getLastPosition();
+        for (CatalogEvent event : events) {
+            event.setPosition(++position);
+        }
+        relay.get().setLastPosition(position);
+        return events.size();
+    }
+
+    /**
+     * Возвращает опубликованные события после указанного смещения в порядке публикации.
+     *
+     * @param after смещение последнего обработанного события или 0, чтобы читать с начала.
+     * @param size  запрошенное количество событий (ограничивается CursorPageDTO.MAX_SIZE).
+     * @return события, id которых — их смещения; пустой список, если новых событий нет.
+     */
+    @Transactional(readOnly = true)
+    public List<CatalogEventDTO> findAfter(long after, Integer size) {
+        return catalogEventRepository.findDtosAfter(after, Limit.of(CursorPageDTO.clampSize(size)));
+    }
+
+    /**
+     * Возвращает смещение последнего опубликованного события (0, если событий нет). Смещение берется
+     * из строки ретранслятора, поэтому не уменьшается, когда очистка удаляет старые события.
+     */
+    @Transactional(readOnly = true)
+    public long latestId() {
+        return catalogEventRelayRepository.findById(RELAY)
+                .map(CatalogEventRelay::getLastPosition)
+                .orElseGet(catalogEventRepository::findMaxPosition);
+    }
+
+    /**
+     * Проверяет, есть ли зафиксированные события, которым еще не назначено смещение.
+     */
+    @Transactional(readOnly = true)
+    public boolean hasUnpublished() {
+        return catalogEventRepository.existsByPositionIsNull();
+    }
+
+    /**
+     * Создает строку ретранслятора в каждом шарде, где ее нет (база без миграций, например в тестах).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureRelayRow() {
+        catalogShards.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+            if (!catalogEventRelayRepository.existsById(RELAY)) {
+                catalogEventRelayRepository.save(new CatalogEventRelay(RELAY, catalogEventRepository.findMaxPosition()));
+            }
+        }));
+    }
+
+    /**
+     * Удаляет опубликованные события старше app.outbox.retention во всех шардах. Потребитель,
+     * отставший больше чем на этот срок, должен заново прочитать каталог целиком.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.purge-interval:PT1H}", initialDelayString = "${app.outbox.purge-interval:PT1H}")
+    public void purge() {
+        Instant cutoff = Instant.now().minus(retention);
+        catalogShards.forEachShard(() -> transactionTemplate.executeWithoutResult(
+                status -> catalogEventRepository.deleteCreatedBefore(cutoff)));
+    }
+}
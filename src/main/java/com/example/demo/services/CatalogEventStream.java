@@ -0,0 +1,165 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.config.ShardContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Доставка событий каталога подписчикам SSE и long-poll.
+ * <p>
+ * Ожидающие запросы не занимают потоки Tomcat: их обслуживает один фоновый цикл.
+ * На каждом шаге он одним запросом узнает последний id события и читает события
+ * только для тех подписчиков, которые от него отстают, поэтому простаивающие
+ * подписчики не создают нагрузки на базу.
+ * <p>
+ * Подписчик читает события шарда, к которому относился его запрос (филиал из заголовка,
+ * без заголовка — основная база); цикл обходит шарды и в каждом обслуживает только его подписчиков.
+ */
+@Component
+public class CatalogEventStream {
+    private final CatalogEventService catalogEventService;
+    private final CatalogShards catalogShards;
+    private final Duration sseTimeout;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public CatalogEventStream(CatalogEventService catalogEventService,
+                              CatalogShards catalogShards,
+                              @Value("${app.outbox.sse-timeout:30m}") Duration sseTimeout) {
+        this.catalogEventService = catalogEventService;
+        this.catalogShards = catalogShards;
+        this.sseTimeout = sseTimeout;
+    }
+
+    /**
+     * Открывает поток SSE. Каждое событие отправляется с id, равным его смещению,
+     * поэтому браузерный EventSource после обрыва сам продолжит с заголовком Last-Event-ID.
+     *
+     * @param after id последнего обработанного события или 0, чтобы читать с начала.
+     */
+    public SseEmitter subscribe(long after) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        SseSubscriber subscriber = new SseSubscriber(currentShard(), after, emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Long-poll: сразу возвращает накопившиеся события, а если их нет — ждет первых новых
+     * до истечения timeout и тогда возвращает пустой список.
+     *
+     * @param after   id последнего обработанного события.
+     * @param size    максимальное количество событий в ответе.
+     * @param timeout сколько ждать новых событий.
+     */
+    public DeferredResult<List<CatalogEventDTO>> poll(long after, Integer size, Duration timeout) {
+        DeferredResult<List<CatalogEventDTO>> result = new DeferredResult<>(timeout.toMillis(), List.of());
+        List<CatalogEventDTO> ready = catalogEventService.findAfter(after, size);
+        if (!ready.isEmpty()) {
+            result.setResult(ready);
+            return result;
+        }
+        PollSubscriber subscriber = new PollSubscriber(currentShard(), after, CursorPageDTO.clampSize(size), result);
+        result.onCompletion(() -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:PT1S}")
+    public void dispatch() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        catalogShards.forEachShard(() -> dispatchInShard(currentShard()));
+    }
+
+    private void dispatchInShard(String shard) {
+        long latestId = catalogEventService.latestId();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.shard.equals(shard) && subscriber.offset < latestId) {
+                List<CatalogEventDTO> events = catalogEventService.findAfter(subscriber.offset, subscriber.size);
+                if (!events.isEmpty() && !subscriber.deliver(events)) {
+                    subscribers.remove(subscriber);
+                }
+            }
+        }
+    }
+
+    private static String currentShard() {
+        String shard = ShardContext.currentShard();
+        return shard == null ? ShardContext.MAIN_SHARD : shard;
+    }
+
+    private abstract static class Subscriber {
+        final String shard;
+        long offset;
+        final int size;
+
+        Subscriber(String shard, long offset, int size) {
+            this.shard = shard;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        /**
+         * @return false, если подписчик больше не ждет событий.
+         */
+        abstract boolean deliver(List<CatalogEventDTO> events);
+    }
+
+    private static final class SseSubscriber extends Subscriber {
+        private final SseEmitter emitter;
+
+        SseSubscriber(String shard, long offset, SseEmitter emitter) {
+            super(shard, offset, CursorPageDTO.MAX_SIZE);
+            this.emitter = emitter;
+        }
+
+        @Override
+        boolean deliver(List<CatalogEventDTO> events) {
+            try {
+                for (CatalogEventDTO event : events) {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.getId()))
+                            .name(event.getType().name())
+                            .data(event));
+                    offset = event.getId();
+                }
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+    }
+
+    private static final class PollSubscriber extends Subscriber {
+        private final DeferredResult<List<CatalogEventDTO>> result;
+
+        PollSubscriber(String shard, long offset, int size, DeferredResult<List<CatalogEventDTO>> result) {
+            super(shard, offset, size);
+            this.result = result;
+        }
+
+        @Override
+        boolean deliver(List<CatalogEventDTO> events) {
+            result.setResult(events);
+            return false;
+        }
+    }
+}
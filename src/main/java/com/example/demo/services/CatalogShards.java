@@ -0,0 +1,167 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.config.ShardContext;
+import com.example.demo.config.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Обращения к шардам каталога за пределами одного филиала. Страницы по всем филиалам собираются
+ * параллельными запросами ко всем шардам (каждый в своей читающей транзакции) и сливаются по ID:
+ * ID уникальны во всем каталоге, поэтому курсор страницы — по-прежнему ID последней строки.
+ * Обслуживание (просрочка выдач, удаление неактивных, сборка индексов) выполняется в шардах по очереди.
+ */
+@Component
+public class CatalogShards {
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate transaction;
+    private final ExecutorService workers;
+
+    @Autowired
+    public CatalogShards(ShardRouter shardRouter,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.sharding.scatter-threads:16}") int threads) {
+        this.shardRouter = shardRouter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.transaction = new TransactionTemplate(transactionManager);
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-shard-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Возвращает страницу строк, упорядоченных по ID. Если филиал запроса задан, страница читается
+     * из его шарда запросом branchQuery; иначе query выполняется во всех шардах параллельно,
+     * и результаты сливаются.
+     *
+     * @param size        размер страницы; запросы возвращают до size + 1 строк по возрастанию ID.
+     * @param branchQuery запрос строк одного филиала.
+     * @param query       запрос строк всех филиалов шарда.
+     * @param idOf        ID строки, он же курсор.
+     */
+    public <T> CursorPageDTO<T> findPage(int size, Function<String, List<T>> branchQuery, Supplier<List<T>> query,
+                                         Function<T, Long> idOf) {
+        if (ShardContext.isBranchBound()) {
+            String branch = ShardContext.currentBranch();
+            return CursorPageDTO.of(readOnlyTransaction.execute(status -> branchQuery.apply(branch)), size, idOf);
+        }
+        List<String> shards = shardRouter.shards();
+        if (shards.size() == 1) {
+            return CursorPageDTO.of(onShard(shards.get(0), () -> readOnlyTransaction.execute(status -> query.get())),
+                    size, idOf);
+        }
+        List<CompletableFuture<List<T>>> futures = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(
+                        () -> onShard(shard, () -> readOnlyTransaction.execute(status -> query.get())), workers))
+                .toList();
+        List<T> rows = new ArrayList<>();
+        try {
+            futures.forEach(future -> rows.addAll(future.join()));
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        rows.sort(Comparator.comparing(idOf));
+        return CursorPageDTO.of(rows.size() > size + 1 ? rows.subList(0, size + 1) : rows, size, idOf);
+    }
+
+    /**
+     * Выполняет поиск записи по ID в шарде, выдавшем этот ID, независимо от филиала запроса: результат
+     * (и то, что попадет в кэши по ключу ID) не зависит от заголовка филиала и от того, прогрет ли кэш.
+     * Транзакция не помечена readOnly и идет в основную базу шарда, а не на реплику: найденное кэшируется.
+     *
+     * @param id   ID записи.
+     * @param find поиск; выполняется в транзакции шарда.
+     */
+    public <T> T findById(long id, Supplier<T> find) {
+        return onShard(shardRouter.shardOfId(id), () -> transaction.execute(status -> find.get()));
+    }
+
+    /**
+     * Выполняет действие в каждом шарде по очереди и возвращает сумму результатов.
+     *
+     * @param action действие; выполняется вне транзакции, транзакции открывает оно само.
+     */
+    public int sumOverShards(Supplier<Integer> action) {
+        int total = 0;
+        for (String shard : shardRouter.shards()) {
+            total += onShard(shard, action);
+        }
+        return total;
+    }
+
+    /**
+     * Выполняет действие в каждом шарде по очереди.
+     */
+    public void forEachShard(Runnable action) {
+        sumOverShards(() -> {
+            action.run();
+            return 0;
+        });
+    }
+
+    /**
+     * Выполняет действие в шарде филиала, привязав филиал к текущему потоку (например, в фоновом потоке
+     * задачи, поставленной запросом с заголовком филиала).
+     */
+    public void inBranch(String branch, Runnable action) {
+        ShardContext.Binding previous = ShardContext.bind(branch, shardRouter.shardOf(branch));
+        try {
+            action.run();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    /**
+     * Выполняет чтение в читающей транзакции шарда филиала или, если филиал не задан, в каждом шарде
+     * по очереди. Филиал передается явно: потоковый ответ пишется в потоке, к которому филиал запроса
+     * уже не привязан.
+     *
+     * @param branch филиал или null для всех филиалов.
+     * @param read   чтение; получает филиал или null, если нужны все строки шарда.
+     */
+    public void readShards(String branch, Consumer<String> read) {
+        if (branch != null) {
+            inBranch(branch, () -> readOnlyTransaction.executeWithoutResult(status -> read.accept(branch)));
+        } else {
+            forEachShard(() -> readOnlyTransaction.executeWithoutResult(status -> read.accept(null)));
+        }
+    }
+
+    private <T> T onShard(String shard, Supplier<T> action) {
+        ShardContext.Binding previous = ShardContext.bind(null, shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
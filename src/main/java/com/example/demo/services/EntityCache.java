@@ -0,0 +1,78 @@
+package com.example.demo.services;
+
+import com.example.demo.config.CacheConfig;
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Точечная очистка кэша второго уровня Hibernate для строк, измененных нативными UPDATE
+ * (выдача и возврат книг, счетчики пользователей). Такие запросы помечены пространством
+ * {@link CacheConfig#BULK_UPDATE_SPACE}, поэтому Hibernate не сбрасывает ради них регионы Book и User целиком,
+ * а затронутые записи удаляются здесь по ID. Здесь же удаляются записи, измененные другими экземплярами
+ * приложения (см. {@link CatalogCache#refreshPositions()}).
+ * <p>
+ * Запись удаляется сразу, чтобы чтения той же транзакции не увидели ее прежнее состояние, и еще раз
+ * после завершения транзакции: до коммита параллельный запрос мог снова положить в регион прежнюю версию.
+ */
+@Component
+public class EntityCache {
+    private static final String USER_BOOKS = User.class.getName() + ".books";
+
+    private final Cache cache;
+
+    @Autowired
+    public EntityCache(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    /**
+     * Удаляет книгу из региона сущностей.
+     */
+    public void evictBook(Long bookId) {
+        evict(() -> cache.evictEntityData(Book.class, bookId));
+    }
+
+    /**
+     * Удаляет пользователя (счетчик выданных книг, время активности) из региона сущностей.
+     */
+    public void evictUser(Long userId) {
+        evict(() -> cache.evictEntityData(User.class, userId));
+    }
+
+    /**
+     * Удаляет список книг пользователя из региона коллекций.
+     */
+    public void evictUserBooks(Long userId) {
+        evict(() -> cache.evictCollectionData(USER_BOOKS, userId));
+    }
+
+    /**
+     * Очищает регионы книг, пользователей и списков книг пользователей целиком.
+     */
+    public void evictAll() {
+        evict(() -> {
+            cache.evictEntityData(Book.class);
+            cache.evictEntityData(User.class);
+            cache.evictCollectionData(USER_BOOKS);
+        });
+    }
+
+    private static void evict(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
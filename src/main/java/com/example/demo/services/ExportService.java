@@ -0,0 +1,293 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.ExportJobDTO;
+import com.example.demo.config.ShardContext;
+import com.example.demo.exception.ExportNotFoundException;
+import com.example.demo.exception.ExportNotReadyException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Фоновая выгрузка каталога книг с владельцами в сжатый CSV для отчетности.
+ * <p>
+ * Строки читаются однонаправленным курсором JDBC (fetch size app.export.fetch-size) в транзакции
+ * только для чтения, поэтому при настроенной реплике выгрузка идет с нее. Сущности не создаются,
+ * каждая строка сразу пишется в gzip-поток поверх FileChannel. Все выгрузки выполняются
+ * одним потоком и занимают не больше одного соединения пула.
+ * <p>
+ * Запрос с заголовком филиала выгружает книги этого филиала из его шарда; без заголовка
+ * выгружаются все шарды по очереди (внутри шарда строки идут по возрастанию ID).
+ * <p>
+ * Задачи хранятся в памяти и не переживают перезапуск; готовые файлы удаляются через app.export.retention.
+ */
+@Service
+public class ExportService {
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+    private static final String FILE_PREFIX = "books-";
+    private static final String FILE_SUFFIX = ".csv.gz";
+    private static final String PART_SUFFIX = ".part";
+    private static final String HEADER = "book_id,tittle,author,user_id,user_name,user_email\n";
+    private static final String QUERY = "select b.id, b.tittle, b.author, u.id, u.name, u.email " +
+            "from books b left join users u on u.id = b.user_id order by b.id";
+    private static final String BRANCH_QUERY = "select b.id, b.tittle, b.author, u.id, u.name, u.email " +
+            "from books b left join users u on u.id = b.user_id where b.branch = ? order by b.id";
+    private static final String ALL_BRANCHES = "";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogShards catalogShards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path directory;
+    private final Duration retention;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ExportJob> pendingByBranch = new HashMap<>();
+
+    @Autowired
+    public ExportService(DataSource dataSource,
+                         CatalogShards catalogShards,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.export.dir:${java.io.tmpdir}/library-exports}") Path directory,
+                         @Value("${app.export.fetch-size:1000}") int fetchSize,
+                         @Value("${app.export.retention:1h}") Duration retention) throws IOException {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.catalogShards = catalogShards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.directory = Files.createDirectories(directory);
+        this.retention = retention;
+        deleteOrphanedFiles();
+    }
+
+    /**
+     * Ставит выгрузку книг филиала текущего запроса (или всех филиалов) в очередь. Если такая же выгрузка
+     * уже ожидает запуска, возвращается она же: ее результат будет не старше нового запроса.
+     *
+     * @return состояние задачи; id используется для запроса статуса и скачивания файла.
+     */
+    public synchronized ExportJobDTO startBooksExport() {
+        String branch = ShardContext.isBranchBound() ? ShardContext.currentBranch() : ALL_BRANCHES;
+        ExportJob pending = pendingByBranch.get(branch);
+        if (pending != null && pending.status == ExportJobDTO.Status.QUEUED) {
+            return pending.toDTO();
+        }
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), branch, Instant.now());
+        jobs.put(job.id, job);
+        pendingByBranch.put(branch, job);
+        worker.execute(() -> run(job));
+        return job.toDTO();
+    }
+
+    /**
+     * Возвращает состояние задачи выгрузки.
+     *
+     * @throws ExportNotFoundException если задачи нет (неизвестный id или файл уже удален по сроку хранения).
+     */
+    public ExportJobDTO getJob(String id) {
+        return find(id).toDTO();
+    }
+
+    /**
+     * Возвращает путь к готовому файлу выгрузки.
+     *
+     * @throws ExportNotFoundException если задачи нет.
+     * @throws ExportNotReadyException если задача еще не завершена или завершилась ошибкой.
+     */
+    public Path getFile(String id) {
+        ExportJob job = find(id);
+        if (job.status != ExportJobDTO.Status.DONE) {
+            throw new ExportNotReadyException("Export " + id + " is " + job.status);
+        }
+        return file(id);
+    }
+
+    /**
+     * Возвращает завершение задачи выгрузки: future выполняется ее итоговым состоянием, когда задача
+     * закончилась успешно или с ошибкой.
+     *
+     * @throws ExportNotFoundException если задачи нет.
+     */
+    CompletableFuture<ExportJobDTO> whenFinished(String id) {
+        return find(id).finished;
+    }
+
+    /**
+     * Удаляет завершенные задачи старше app.export.retention вместе с их файлами.
+     */
+    @Scheduled(fixedDelayString = "${app.export.purge-interval:PT10M}", initialDelayString = "${app.export.purge-interval:PT10M}")
+    public void purge() {
+        Instant threshold = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            boolean expired = job.finishedAt != null && job.finishedAt.isBefore(threshold);
+            if (expired) {
+                deleteQuietly(file(job.id));
+            }
+            return expired;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private void run(ExportJob job) {
+        synchronized (this) {
+            job.status = ExportJobDTO.Status.RUNNING;
+        }
+        Path part = directory.resolve(FILE_PREFIX + job.id + FILE_SUFFIX + PART_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Channels.newOutputStream(channel), 1 << 16), StandardCharsets.UTF_8), 1 << 16)) {
+                out.write(HEADER);
+                RowCallbackHandler writeRow = rs -> {
+                    try {
+                        out.write(Long.toString(rs.getLong(1)));
+                        out.write(',');
+                        writeCsv(out, rs.getString(2));
+                        out.write(',');
+                        writeCsv(out, rs.getString(3));
+                        out.write(',');
+                        writeCsv(out, rs.getString(4));
+                        out.write(',');
+                        writeCsv(out, rs.getString(5));
+                        out.write(',');
+                        writeCsv(out, rs.getString(6));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    job.rows++;
+                };
+                if (job.branch.equals(ALL_BRANCHES)) {
+                    catalogShards.forEachShard(() -> readOnlyTransaction.executeWithoutResult(
+                            status -> jdbcTemplate.query(QUERY, writeRow)));
+                } else {
+                    catalogShards.inBranch(job.branch, () -> readOnlyTransaction.executeWithoutResult(
+                            status -> jdbcTemplate.query(BRANCH_QUERY, writeRow, job.branch)));
+                }
+            }
+            job.bytes = Files.size(part);
+            Files.move(part, file(job.id), StandardCopyOption.ATOMIC_MOVE);
+            job.finish(ExportJobDTO.Status.DONE, null);
+            log.info("Catalog export {} finished: {} rows, {} bytes", job.id, job.rows, job.bytes);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(part);
+            job.finish(ExportJobDTO.Status.FAILED, e.getMessage());
+            log.warn("Catalog export {} failed", job.id, e);
+        }
+    }
+
+    private ExportJob find(String id) {
+        ExportJob job = jobs.get(id);
+        if (job == null) {
+            throw new ExportNotFoundException("Export " + id + " not found");
+        }
+        return job;
+    }
+
+    private Path file(String id) {
+        return directory.resolve(FILE_PREFIX + id + FILE_SUFFIX);
+    }
+
+    /**
+     * Удаляет файлы выгрузок, оставшиеся от предыдущего запуска: их задачи уже недоступны.
+     */
+    private void deleteOrphanedFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX + "*")) {
+            files.forEach(this::deleteQuietly);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete export file {}", path, e);
+        }
+    }
+
+    private static void writeCsv(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Состояние задачи; меняется только потоком выгрузки, читается потоками запросов.
+     */
+    private static final class ExportJob {
+        private final String id;
+        private final String branch;
+        private final Instant createdAt;
+        private volatile ExportJobDTO.Status status = ExportJobDTO.Status.QUEUED;
+        private volatile long rows;
+        private volatile long bytes;
+        private volatile Instant finishedAt;
+        private volatile String error;
+        private final CompletableFuture<ExportJobDTO> finished = new CompletableFuture<>();
+
+        private ExportJob(String id, String branch, Instant createdAt) {
+            this.id = id;
+            this.branch = branch;
+            this.createdAt = createdAt;
+        }
+
+        private void finish(ExportJobDTO.Status status, String error) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+            this.status = status;
+            finished.complete(toDTO());
+        }
+
+        private ExportJobDTO toDTO() {
+            return new ExportJobDTO(id, status, rows, bytes, createdAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo.services;
+
+import com.example.demo.exception.BadRequestException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Потоковое чтение строк импорта из JSON-массива объектов или CSV с заголовком.
+ * Строки читаются по одной, поэтому весь файл никогда не держится в памяти.
+ */
+final class ImportRows {
+
+    private ImportRows() {
+    }
+
+    /**
+     * Читает JSON-массив плоских объектов; значения полей приводятся к строкам.
+     */
+    static Iterator<Map<String, String>> json(InputStream in, ObjectMapper objectMapper) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(in);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new BadRequestException("Expected a JSON array of objects");
+        }
+        return new Iterator<>() {
+            private JsonToken next = advance();
+
+            private JsonToken advance() {
+                try {
+                    return parser.nextToken();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next == JsonToken.START_OBJECT;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    Map<String, String> row = new HashMap<>();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (value.isStructStart()) {
+                            parser.skipChildren();
+                        } else if (value != JsonToken.VALUE_NULL) {
+                            row.put(field, parser.getValueAsString());
+                        }
+                    }
+                    next = advance();
+                    return row;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Читает CSV, первая строка которого содержит имена колонок.
+     * Поддерживаются значения в двойных кавычках с экранированием "".
+     */
+    static Iterator<Map<String, String>> csv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            return List.<Map<String, String>>of().iterator();
+        }
+        List<String> header = splitCsvLine(headerLine.replace("\uFEFF", ""));
+        return new Iterator<>() {
+            private String line = readNonEmpty();
+
+            private String readNonEmpty() {
+                try {
+                    String candidate = reader.readLine();
+                    while (candidate != null && candidate.isBlank()) {
+                        candidate = reader.readLine();
+                    }
+                    return candidate;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return line != null;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<String> values = splitCsvLine(line);
+                Map<String, String> row = new HashMap<>();
+                for (int i = 0; i < header.size() && i < values.size(); i++) {
+                    if (!values.get(i).isEmpty()) {
+                        row.put(header.get(i).trim(), values.get(i));
+                    }
+                }
+                line = readNonEmpty();
+                return row;
+            }
+        };
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.ImportResultDTO;
+import com.example.demo.config.ShardContext;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.models.Book;
+import com.example.demo.models.CatalogEvent;
+import com.example.demo.models.User;
+import com.example.demo.repositories.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая загрузка книг и пользователей из JSON-массива или CSV.
+ * Строки читаются потоково и сохраняются пачками по hibernate.jdbc.batch_size записей,
+ * каждая пачка в своей транзакции. Ошибочные строки попадают в отчет и не прерывают загрузку.
+ */
+@Service
+public class ImportService {
+    public static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final CatalogCache catalogCache;
+    private final CatalogEventService catalogEventService;
+    private final LendingCounters lendingCounters;
+    private final LoanService loanService;
+    private final int batchSize;
+
+    @Autowired
+    public ImportService(UserRepository userRepository,
+                         EntityManager entityManager,
+                         PlatformTransactionManager transactionManager,
+                         Validator validator,
+                         ObjectMapper objectMapper,
+                         CatalogCache catalogCache,
+                         CatalogEventService catalogEventService,
+                         LendingCounters lendingCounters,
+                         LoanService loanService,
+                         @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}") int batchSize) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.catalogCache = catalogCache;
+        this.catalogEventService = catalogEventService;
+        this.lendingCounters = lendingCounters;
+        this.loanService = loanService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Импортирует книги. Поля строки: tittle, author и необязательный userId.
+     *
+     * @param in          тело запроса с данными.
+     * @param contentType application/json (массив объектов) или text/csv (с заголовком).
+     * @return количество загруженных строк и ошибки по отдельным строкам.
+     */
+    public ImportResultDTO importBooks(InputStream in, MediaType contentType) throws IOException {
+        return importRows(openRows(in, contentType), this::saveBooks);
+    }
+
+    /**
+     * Импортирует пользователей. Поля строки: name и email.
+     *
+     * @param in          тело запроса с данными.
+     * @param contentType application/json (массив объектов) или text/csv (с заголовком).
+     * @return количество загруженных строк и ошибки по отдельным строкам.
+     */
+    public ImportResultDTO importUsers(InputStream in, MediaType contentType) throws IOException {
+        return importRows(openRows(in, contentType), this::saveUsers);
+    }
+
+    private Iterator<Map<String, String>> openRows(InputStream in, MediaType contentType) throws IOException {
+        if (contentType != null && TEXT_CSV.isCompatibleWith(contentType)) {
+            return ImportRows.csv(in);
+        }
+        if (contentType == null || MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return ImportRows.json(in, objectMapper);
+        }
+        throw new BadRequestException("Unsupported import format: " + contentType);
+    }
+
+    private ImportResultDTO importRows(Iterator<Map<String, String>> rows,
+                                       BiConsumer<List<RawRow>, ImportResultDTO> saveChunk) {
+        ImportResultDTO result = new ImportResultDTO();
+        List<RawRow> chunk = new ArrayList<>(batchSize);
+        long rowNumber = 0;
+        try {
+            while (rows.hasNext()) {
+                rowNumber++;
+                chunk.add(new RawRow(rowNumber, rows.next()));
+                if (chunk.size() == batchSize) {
+                    saveChunk.accept(chunk, result);
+                    chunk.clear();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            reportError(result, rowNumber, "Malformed input, import stopped: " + e.getCause().getMessage());
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk.accept(chunk, result);
+        }
+        return result;
+    }
+
+    private void saveBooks(List<RawRow> chunk, ImportResultDTO result) {
+        Set<Long> requestedUserIds = new HashSet<>();
+        for (RawRow row : chunk) {
+            try {
+                Long userId = parseUserId(row);
+                if (userId != null) {
+                    requestedUserIds.add(userId);
+                }
+            } catch (NumberFormatException ignored) {
+                // строка будет отклонена при разборе ниже
+            }
+        }
+        Set<Long> existingUserIds = requestedUserIds.isEmpty()
+                ? Set.of() : userRepository.findExistingIds(requestedUserIds);
+
+        List<Parsed<Book>> books = new ArrayList<>(chunk.size());
+        for (RawRow row : chunk) {
+            if (!hasRequiredFields(row, result, "tittle", "author")) {
+                continue;
+            }
+            Long userId;
+            try {
+                userId = parseUserId(row);
+            } catch (NumberFormatException e) {
+                reportError(result, row.number(), "userId: not a number");
+                continue;
+            }
+            if (userId != null && !existingUserIds.contains(userId)) {
+                reportError(result, row.number(), "User with ID " + userId + " not found");
+                continue;
+            }
+            Book book = new Book();
+            book.setTittle(row.values().get("tittle"));
+            book.setAuthor(row.values().get("author"));
+            book.setBranch(ShardContext.currentBranch());
+            if (userId != null) {
+                User owner = new User();
+                owner.setId(userId);
+                book.setUser(owner);
+            }
+            if (isValid(book, row.number(), result)) {
+                books.add(new Parsed<>(row.number(), book));
+            }
+        }
+
+        persistChunk(books, result, book -> {
+            book.setId(null);
+            if (book.getUser() != null) {
+                book.setUser(entityManager.getReference(User.class, book.getUser().getId()));
+            }
+        }, this::afterBooksPersisted);
+    }
+
+    private void saveUsers(List<RawRow> chunk, ImportResultDTO result) {
+        List<Parsed<User>> users = new ArrayList<>(chunk.size());
+        for (RawRow row : chunk) {
+            if (!hasRequiredFields(row, result, "name", "email")) {
+                continue;
+            }
+            User user = new User();
+            user.setName(row.values().get("name"));
+            user.setEmail(row.values().get("email"));
+            user.setBranch(ShardContext.currentBranch());
+            if (isValid(user, row.number(), result)) {
+                users.add(new Parsed<>(row.number(), user));
+            }
+        }
+        persistChunk(users, result, user -> user.setId(null),
+                saved -> saved.forEach(user -> catalogEventService.record(CatalogEvent.Type.USER_CREATED, user.getId(), null)));
+    }
+
+    /**
+     * Пишет события, открывает выдачи и обновляет счетчики выдачи одним UPDATE на автора и на пользователя.
+     * Пользователи, получившие книги, удаляются из кэша после коммита пачки.
+     * Книги, назначенные пользователю при импорте, учитываются без проверки лимита выдачи:
+     * импорт переносит уже существующие выдачи, срок возврата отсчитывается от момента импорта.
+     */
+    private void afterBooksPersisted(List<Book> books) {
+        Map<String, LendingCounters.Delta> byAuthor = new HashMap<>();
+        Map<Long, Integer> borrowedByUser = new TreeMap<>();
+        LoanService.Batch loans = loanService.batch();
+        for (Book book : books) {
+            boolean lent = book.getUser() != null;
+            catalogEventService.record(CatalogEvent.Type.BOOK_CREATED, book.getId(), lent ? book.getUser().getId() : null);
+            byAuthor.merge(book.getAuthor(), new LendingCounters.Delta(1, lent ? 0 : 1), LendingCounters.Delta::plus);
+            if (lent) {
+                borrowedByUser.merge(book.getUser().getId(), 1, Integer::sum);
+                loans.lent(book.getId(), book.getUser().getId());
+            }
+        }
+        borrowedByUser.forEach(lendingCounters::addBorrowed);
+        borrowedByUser.keySet().forEach(catalogCache::evictUser);
+        lendingCounters.apply(byAuthor);
+        loanService.apply(loans);
+    }
+
+    private Long parseUserId(RawRow row) {
+        String userId = row.values().get("userId");
+        return userId == null || userId.isBlank() ? null : Long.valueOf(userId.trim());
+    }
+    /**
+     * Сохраняет пачку одной транзакцией с пакетными INSERT. Если пачка не прошла целиком,
+     * строки сохраняются по одной, чтобы найти и отчитаться только о сбойных.
+     *
+     * @param prepare   готовит сущность к сохранению в текущей транзакции
+     *                  (сбрасывает ID после отката, подставляет ссылки на связанные сущности).
+     * @param persisted вызывается для сохраненных сущностей в той же транзакции
+     *                  (события outbox, счетчики выдачи).
+     */
+    private <T> void persistChunk(List<Parsed<T>> rows, ImportResultDTO result,
+                                  Consumer<T> prepare, Consumer<List<T>> persisted) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                rows.forEach(row -> {
+                    prepare.accept(row.value());
+                    entityManager.persist(row.value());
+                });
+                persisted.accept(rows.stream().map(Parsed::value).toList());
+                entityManager.flush();
+                entityManager.clear();
+            });
+            result.setImported(result.getImported() + rows.size());
+            catalogCache.markChanged();
+        } catch (RuntimeException chunkFailure) {
+            for (Parsed<T> row : rows) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        prepare.accept(row.value());
+                        entityManager.persist(row.value());
+                        persisted.accept(List.of(row.value()));
+                        entityManager.flush();
+                        entityManager.clear();
+                    });
+                    result.setImported(result.getImported() + 1);
+                    catalogCache.markChanged();
+                } catch (RuntimeException rowFailure) {
+                    reportError(result, row.number(), NestedExceptionUtils.getMostSpecificCause(rowFailure).getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean hasRequiredFields(RawRow row, ImportResultDTO result, String... fields) {
+        for (String field : fields) {
+            String value = row.values().get(field);
+            if (value == null || value.isBlank()) {
+                reportError(result, row.number(), field + ": is required");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isValid(Object entity, long rowNumber, ImportResultDTO result) {
+        Set<ConstraintViolation<Object>> violations = validator.validate(entity);
+        if (!violations.isEmpty()) {
+            reportError(result, rowNumber, violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return false;
+        }
+        return true;
+    }
+
+    private void reportError(ImportResultDTO result, long rowNumber, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ImportResultDTO.RowError(rowNumber, message));
+        }
+    }
+
+    private record RawRow(long number, Map<String, String> values) {
+    }
+
+    private record Parsed<T>(long number, T value) {
+    }
+}
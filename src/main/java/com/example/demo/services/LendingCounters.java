@@ -0,0 +1,175 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.AvailabilityDTO;
+import com.example.demo.exception.BorrowLimitExceededException;
+import com.example.demo.models.CatalogStats;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.CatalogStatsRepository;
+import com.example.demo.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Счетчики выдачи: число книг у каждого пользователя и число всех и доступных книг
+ * по авторам и по каталогу в целом. Счетчики меняются атомарными UPDATE в транзакции
+ * самого изменения, поэтому чтение любого из них — один запрос по первичному ключу.
+ * <p>
+ * Строки блокируются в одном порядке во всех операциях: книги, пользователи (по ID),
+ * авторы (по имени), строка каталога, — чтобы параллельные транзакции не попадали во взаимную блокировку.
+ */
+@Component
+public class LendingCounters {
+    private static final int CATALOG = 1;
+
+    private final UserRepository userRepository;
+    private final BookRepository bookRepository;
+    private final AuthorStatsRepository authorStatsRepository;
+    private final CatalogStatsRepository catalogStatsRepository;
+    private final EntityCache entityCache;
+    private final int maxBorrowed;
+
+    @Autowired
+    public LendingCounters(UserRepository userRepository,
+                           BookRepository bookRepository,
+                           AuthorStatsRepository authorStatsRepository,
+                           CatalogStatsRepository catalogStatsRepository,
+                           EntityCache entityCache,
+                           @Value("${app.lending.max-borrowed:10}") int maxBorrowed) {
+        this.userRepository = userRepository;
+        this.bookRepository = bookRepository;
+        this.authorStatsRepository = authorStatsRepository;
+        this.catalogStatsRepository = catalogStatsRepository;
+        this.entityCache = entityCache;
+        this.maxBorrowed = maxBorrowed;
+    }
+
+    /**
+     * Максимальное число книг, одновременно выданных одному пользователю.
+     */
+    public int maxBorrowed() {
+        return maxBorrowed;
+    }
+
+    /**
+     * Учитывает выдачу книги пользователю с проверкой лимита и отмечает его активность.
+     *
+     * @throws BorrowLimitExceededException если у пользователя уже maxBorrowed книг.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void borrow(Long userId) {
+        if (userRepository.incrementBorrowedBelow(userId, maxBorrowed, Instant.now()) == 0) {
+            throw new BorrowLimitExceededException("User with ID " + userId
+                    + " already has the maximum of " + maxBorrowed + " books");
+        }
+        entityCache.evictUser(userId);
+    }
+
+    /**
+     * Учитывает возврат книги пользователем и отмечает его активность.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void giveBack(Long userId) {
+        userRepository.decrementBorrowed(userId, Instant.now());
+        entityCache.evictUser(userId);
+    }
+
+    /**
+     * Меняет счетчик книг пользователя без проверки лимита (удаление книги, импорт).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addBorrowed(Long userId, int delta) {
+        if (delta != 0) {
+            userRepository.addBorrowed(userId, delta);
+            entityCache.evictUser(userId);
+        }
+    }
+
+    /**
+     * Учитывает, что существующая книга выдана (-1 доступная) или возвращена (+1 доступная).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addAvailableForBook(Long bookId, int available) {
+        authorStatsRepository.addAvailableForBook(bookId, available);
+        catalogStatsRepository.add(CATALOG, 0, available);
+    }
+
+    /**
+     * Применяет изменения числа книг по авторам и их сумму к итогам каталога.
+     *
+     * @param byAuthor изменения по авторам; нулевые пропускаются.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(Map<String, Delta> byAuthor) {
+        long total = 0;
+        long available = 0;
+        for (Map.Entry<String, Delta> entry : new TreeMap<>(byAuthor).entrySet()) {
+            Delta delta = entry.getValue();
+            if (delta.total() == 0 && delta.available() == 0) {
+                continue;
+            }
+            if (delta.total() > 0) {
+                authorStatsRepository.ensureExists(entry.getKey());
+            }
+            authorStatsRepository.add(entry.getKey(), delta.total(), delta.available());
+            total += delta.total();
+            available += delta.available();
+        }
+        if (total != 0 || available != 0) {
+            catalogStatsRepository.add(CATALOG, total, available);
+        }
+    }
+
+    /**
+     * Применяет изменение числа книг одного автора.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(String author, long total, long available) {
+        apply(Map.of(author, new Delta(total, available)));
+    }
+
+    @Transactional(readOnly = true)
+    public AvailabilityDTO catalogAvailability() {
+        return catalogStatsRepository.findById(CATALOG)
+                .map(stats -> new AvailabilityDTO(null, stats.getTotal(), stats.getAvailable()))
+                .orElseGet(() -> new AvailabilityDTO(null, 0, 0));
+    }
+
+    @Transactional(readOnly = true)
+    public AvailabilityDTO authorAvailability(String author) {
+        return authorStatsRepository.findById(author)
+                .map(stats -> new AvailabilityDTO(author, stats.getTotal(), stats.getAvailable()))
+                .orElseGet(() -> new AvailabilityDTO(author, 0, 0));
+    }
+
+    /**
+     * Создает строку итогов каталога, если ее нет (база без миграций, например в тестах).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void ensureCatalogRow() {
+        if (!catalogStatsRepository.existsById(CATALOG)) {
+            long total = bookRepository.count();
+            catalogStatsRepository.save(new CatalogStats(CATALOG, total, total - bookRepository.countByUserIsNotNull()));
+        }
+    }
+
+    /**
+     * Изменение числа всех и доступных книг.
+     */
+    public record Delta(long total, long available) {
+
+        public Delta plus(Delta other) {
+            return new Delta(total + other.total, available + other.available);
+        }
+    }
+}
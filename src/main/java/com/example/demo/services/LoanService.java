@@ -0,0 +1,194 @@
+package com.example.demo.services;
+
+import com.example.demo.models.Loan;
+import com.example.demo.repositories.LoanRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * История выдач. Каждая выдача открывает запись со сроком возврата app.loans.period,
+ * каждый возврат или удаление выданной книги закрывает ее — в транзакции самого изменения.
+ * <p>
+ * Просроченные выдачи отмечаются в фоне порциями по app.loans.overdue-chunk-size, каждая порция
+ * в своей короткой транзакции. Порция читается из частичного индекса открытых неотмеченных выдач
+ * по due_at (диапазон due_at &lt; now), поэтому стоимость проверки зависит от числа просроченных
+ * выдач, а не от размера истории.
+ */
+@Service
+public class LoanService {
+    private static final Logger log = LoggerFactory.getLogger(LoanService.class);
+
+    private final LoanRepository loanRepository;
+    private final CatalogShards catalogShards;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter overdueFlagged;
+    private final Duration period;
+    private final int chunkSize;
+    private final int partitionsAhead;
+
+    @Autowired
+    public LoanService(LoanRepository loanRepository,
+                       CatalogShards catalogShards,
+                       DataSource dataSource,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry registry,
+                       @Value("${app.loans.period:14d}") Duration period,
+                       @Value("${app.loans.overdue-chunk-size:1000}") int chunkSize,
+                       @Value("${app.loans.partitions-ahead:3}") int partitionsAhead) {
+        this.loanRepository = loanRepository;
+        this.catalogShards = catalogShards;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.overdueFlagged = Counter.builder("library.loans.overdue.flagged").register(registry);
+        this.period = period;
+        this.chunkSize = chunkSize;
+        this.partitionsAhead = partitionsAhead;
+    }
+
+    /**
+     * Открывает запись о выдаче книги пользователю.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void lent(Long bookId, Long userId) {
+        Instant now = Instant.now();
+        loanRepository.save(new Loan(null, bookId, userId, now, now.plus(period), null, false));
+    }
+
+    /**
+     * Закрывает открытую запись о выдаче книги (возврат или удаление выданной книги).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void returned(Long bookId) {
+        loanRepository.closeOpen(List.of(bookId), Instant.now());
+    }
+
+    /**
+     * Начинает накопление изменений истории для пакетной операции; см. {@link #apply(Batch)}.
+     */
+    public Batch batch() {
+        return new Batch(Instant.now(), period);
+    }
+
+    /**
+     * Записывает накопленные изменения: один UPDATE закрывает выдачи, открытые до пакета,
+     * новые записи вставляются пакетным INSERT при сбросе контекста.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(Batch batch) {
+        if (!batch.returned.isEmpty()) {
+            loanRepository.closeOpen(batch.returned, batch.now);
+        }
+        if (!batch.loans.isEmpty()) {
+            loanRepository.saveAll(batch.loans);
+        }
+    }
+
+    /**
+     * Отмечает просроченные выдачи, не отмеченные ранее. Выполняется раз в app.loans.overdue-interval.
+     */
+    @Scheduled(fixedDelayString = "${app.loans.overdue-interval:PT5M}", initialDelayString = "${app.loans.overdue-interval:PT5M}")
+    public void flagOverdue() {
+        int flagged = flagOverdue(Instant.now());
+        if (flagged > 0) {
+            log.info("Flagged {} overdue loans", flagged);
+        }
+    }
+
+    /**
+     * Отмечает открытые выдачи со сроком возврата раньше now порциями, каждая в своей транзакции.
+     * Отмеченные и возвращенные выдачи выпадают из индекса, поэтому следующая порция читается с его начала.
+     * Шарды обходятся по очереди.
+     *
+     * @param now момент, относительно которого выдача считается просроченной.
+     * @return число отмеченных выдач.
+     */
+    public int flagOverdue(Instant now) {
+        return catalogShards.sumOverShards(() -> flagOverdueInShard(now));
+    }
+
+    private int flagOverdueInShard(Instant now) {
+        int total = 0;
+        Chunk chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = loanRepository.findOverdueIds(now, Limit.of(chunkSize));
+                return new Chunk(ids.size(), ids.isEmpty() ? 0 : loanRepository.markOverdue(ids));
+            });
+            overdueFlagged.increment(chunk.flagged());
+            total += chunk.flagged();
+        } while (chunk.found() == chunkSize);
+        return total;
+    }
+
+    /**
+     * Создает секции истории выдач на текущий и app.loans.partitions-ahead следующих месяцев
+     * в каждом шарде при старте и ежедневно. 0 отключает обслуживание (схема без секционирования, например в тестах).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.loans.partition-cron:0 0 3 * * *}")
+    public void createPartitions() {
+        if (partitionsAhead > 0) {
+            catalogShards.forEachShard(() -> jdbcTemplate.execute("select create_loan_partitions(" + partitionsAhead + ")"));
+        }
+    }
+
+    private record Chunk(int found, int flagged) {
+    }
+
+    /**
+     * Изменения истории, накопленные пакетной операцией в порядке ее шагов. Книга, выданная и возвращенная
+     * в одном пакете, получает сразу закрытую запись; UPDATE закрывает только выдачи, открытые до пакета.
+     */
+    public static final class Batch {
+        private final Instant now;
+        private final Duration period;
+        private final List<Loan> loans = new ArrayList<>();
+        private final Map<Long, Loan> opened = new HashMap<>();
+        private final Set<Long> returned = new HashSet<>();
+
+        private Batch(Instant now, Duration period) {
+            this.now = now;
+            this.period = period;
+        }
+
+        public void lent(Long bookId, Long userId) {
+            Loan loan = new Loan(null, bookId, userId, now, now.plus(period), null, false);
+            loans.add(loan);
+            opened.put(bookId, loan);
+        }
+
+        public void returned(Long bookId) {
+            Loan loan = opened.remove(bookId);
+            if (loan != null) {
+                loan.setReturnedAt(now);
+            } else {
+                returned.add(bookId);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.config.ShardContext;
+import com.example.demo.repositories.ReactiveCatalogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующие чтения каталога через R2DBC. Поток запроса не ждет базу: строки передаются клиенту
+ * по мере поступления, а следующая порция запрашивается у базы, только когда клиент принял предыдущую.
+ * Данные читаются напрямую из таблиц, минуя кэши и счетчики блокирующего API.
+ * <p>
+ * Книги отдаются потоком NDJSON (запись на каждую книгу, подходит для больших выборок) или,
+ * с Accept: application/json, одним массивом после чтения всей выборки (дешевле для коротких страниц).
+ * Как и в блокирующем API, с заголовком филиала читаются книги филиала, без него — всех шардов.
+ */
+@Service
+public class ReactiveCatalogService {
+    private final ReactiveCatalogRepository reactiveCatalogRepository;
+
+    @Autowired
+    public ReactiveCatalogService(ReactiveCatalogRepository reactiveCatalogRepository) {
+        this.reactiveCatalogRepository = reactiveCatalogRepository;
+    }
+
+    /**
+     * Возвращает книги, упорядоченные по ID, начиная после указанного курсора.
+     *
+     * @param after ID последней полученной книги или null, чтобы читать с начала.
+     * @param limit максимальное число книг или null, чтобы передать все оставшиеся.
+     */
+    public Flux<BookDTO> streamBooks(Long after, Integer limit) {
+        long from = after == null ? 0L : after;
+        Flux<BookDTO> books = ShardContext.isBranchBound()
+                ? reactiveCatalogRepository.streamBooksAfterInBranch(ShardContext.currentBranch(), from)
+                : reactiveCatalogRepository.streamBooksAfter(from);
+        return limit == null ? books : books.take(Math.max(limit, 0), true);
+    }
+
+    /**
+     * Находит пользователя вместе с выданными ему книгами.
+     *
+     * @return пользователь или пустой Mono, если пользователь не найден.
+     */
+    public Mono<UserDTO> findUser(Long id) {
+        return reactiveCatalogRepository.findUserWithBooks(id);
+    }
+}
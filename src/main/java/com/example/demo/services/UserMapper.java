@@ -0,0 +1,39 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Преобразование сущностей пользователей в DTO. Не зависит от бинов приложения,
+ * поэтому используется и сервисом, и бенчмарками маппинга.
+ */
+final class UserMapper {
+
+    private UserMapper() {
+    }
+
+    /**
+     * Преобразует объект User в объект UserDTO.
+     *
+     * @param user объект User, который нужно преобразовать.
+     * @return объект UserDTO, содержащий информацию о пользователе.
+     */
+    static UserDTO toUserDTO(User user) {
+        if (user == null) {
+            return null;
+        }
+        if (user.getBooks() == null) {
+            return new UserDTO(user.getId(), user.getName(), user.getEmail(), new ArrayList<>());
+        }
+        List<BookDTO> bookDTOs = user.getBooks().stream()
+                .map(book -> new BookDTO(book.getId(), book.getTittle(), book.getAuthor()))
+                .collect(Collectors.toList());
+
+        return new UserDTO(user.getId(), user.getName(), user.getEmail(), bookDTOs);
+    }
+}
@@ -1,40 +1,129 @@
 package com.example.demo.services;
 
 import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.BookView;
+import com.example.demo.DTO.BorrowedCountDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.LendingOperationDTO;
+import com.example.demo.DTO.LendingResultDTO;
+import com.example.demo.DTO.UserBookRow;
 import com.example.demo.DTO.UserDTO;
+import com.example.demo.config.CacheConfig;
+import com.example.demo.config.ShardContext;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.BookLendingConflictException;
 import com.example.demo.exception.BookNotFoundException;
+import com.example.demo.exception.BorrowLimitExceededException;
 import com.example.demo.exception.UserNotFoundException;
 import com.example.demo.models.Book;
+import com.example.demo.models.CatalogEvent;
 import com.example.demo.models.User;
 import com.example.demo.repositories.BookRepository;
 import com.example.demo.repositories.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("library.service")
 public class UserService {
+    public static final int MAX_LENDING_BATCH = 1000;
+
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
+    private final CatalogCache catalogCache;
+    private final EntityCache entityCache;
+    private final CatalogEventService catalogEventService;
+    private final LendingCounters lendingCounters;
+    private final LoanService loanService;
+    private final CatalogShards catalogShards;
+    private final TransactionTemplate transactionTemplate;
+    private final int deleteChunkSize;
+    private final Duration minInactivity;
 
     @Autowired
-    public UserService(UserRepository userRepository, BookRepository bookRepository) {
+    public UserService(UserRepository userRepository, BookRepository bookRepository,
+                       CatalogCache catalogCache, EntityCache entityCache, CatalogEventService catalogEventService,
+                       LendingCounters lendingCounters, LoanService loanService,
+                       CatalogShards catalogShards,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.users.delete-chunk-size:500}") int deleteChunkSize,
+                       @Value("${app.users.min-inactivity:P30D}") Duration minInactivity) {
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
+        this.catalogCache = catalogCache;
+        this.entityCache = entityCache;
+        this.catalogEventService = catalogEventService;
+        this.lendingCounters = lendingCounters;
+        this.loanService = loanService;
+        this.catalogShards = catalogShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deleteChunkSize = deleteChunkSize;
+        this.minInactivity = minInactivity;
     }
 
     /**
      * Находит пользователя по его ID и возвращает объект DTO.
+     * Пользователь, список его книг и сами книги читаются через кэш второго уровня,
+     * поэтому повторный поиск не обращается к базе, пока они не изменились. Пользователь читается из шарда,
+     * выдавшего его ID, независимо от филиала запроса, в транзакции без readOnly, то есть из основной базы:
+     * отстающая реплика заполнила бы кэши прежней версией пользователя.
      *
      * @param id идентификатор пользователя.
      * @return объект UserDTO, содержащий информацию о пользователе, или null, если пользователь не найден.
      */
+    @Cacheable(cacheNames = CacheConfig.USERS, key = "#id", unless = "#result == null")
     public UserDTO findById(Long id) {
-        Optional<User> foundUser = userRepository.findById(id);
-        return foundUser.map(this::toUserDTO).orElse(null);
+        return catalogShards.findById(id, () -> userRepository.findById(id).map(UserMapper::toUserDTO).orElse(null));
+    }
+
+    /**
+     * Находит пользователя по email (без учета регистра) через уникальный индекс. Читает с реплики, если она
+     * настроена; прочитанные сущности в кэш второго уровня не попадают.
+     *
+     * @param email email пользователя.
+     * @return объект UserDTO или null, если пользователь не найден.
+     */
+    @Transactional(readOnly = true)
+    public UserDTO findByEmail(String email) {
+        return userRepository.findByEmail(email.trim().toLowerCase(Locale.ROOT))
+                .map(UserMapper::toUserDTO)
+                .orElse(null);
+    }
+
+    /**
+     * Возвращает число книг, выданных пользователю, по поддерживаемому счетчику, без загрузки книг.
+     *
+     * @param id идентификатор пользователя.
+     * @return счетчик и лимит выдачи или null, если пользователь не найден.
+     */
+    @Transactional(readOnly = true)
+    public BorrowedCountDTO findBorrowedCount(Long id) {
+        return userRepository.findBorrowedCount(id)
+                .map(borrowed -> new BorrowedCountDTO(id, borrowed, lendingCounters.maxBorrowed()))
+                .orElse(null);
     }
 
     /**
@@ -42,13 +131,60 @@ public class UserService {
      *
      * @return список объектов UserDTO, представляющих всех пользователей.
      */
+    @Transactional(readOnly = true)
     public List<UserDTO> findAll() {
-        List<User> users = userRepository.findAll();
+        List<User> users = userRepository.findAllWithBooks();
         return users.stream()
-                .map(this::toUserDTO)
+                .map(UserMapper::toUserDTO)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Возвращает страницу пользователей, упорядоченных по ID, начиная после указанного курсора.
+     * Выполняет ровно два запроса в каждом шарде независимо от размера страницы: выборку ID
+     * и JOIN-проекцию пользователей с книгами, без загрузки сущностей. Если филиал запроса задан,
+     * в страницу попадают только его пользователи; иначе пользователи всех филиалов со всех шардов.
+     *
+     * @param after ID последнего пользователя предыдущей страницы или null для первой страницы.
+     * @param size  запрошенный размер страницы (ограничивается CursorPageDTO.MAX_SIZE).
+     * @return страница UserDTO и курсор для следующего запроса (null, если пользователей больше нет).
+     */
+    public CursorPageDTO<UserDTO> findPage(Long after, Integer size) {
+        int pageSize = CursorPageDTO.clampSize(size);
+        long from = after == null ? 0L : after;
+        return catalogShards.findPage(pageSize,
+                branch -> findUsers(userRepository.findIdsAfterInBranch(branch, from, Limit.of(pageSize + 1))),
+                () -> findUsers(userRepository.findIdsAfter(from, Limit.of(pageSize + 1))),
+                UserDTO::getId);
+    }
+
+    private List<UserDTO> findUsers(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<UserDTO> users = new ArrayList<>(ids.size());
+        groupRows(userRepository.findRowsByUserIds(ids).stream(), users::add);
+        return users;
+    }
+
+    /**
+     * Последовательно передает всех пользователей филиала (или всех филиалов, шард за шардом) потребителю,
+     * читая JOIN-проекцию через курсор JDBC. Сущности не загружаются, поэтому расход памяти не зависит
+     * от размера таблицы.
+     *
+     * @param branch   филиал или null для всех филиалов.
+     * @param consumer обработчик, вызываемый для каждого UserDTO в порядке возрастания ID внутри шарда.
+     */
+    public void streamAll(String branch, Consumer<UserDTO> consumer) {
+        catalogShards.readShards(branch, inBranch -> {
+            try (Stream<UserBookRow> rows = inBranch == null
+                    ? userRepository.streamAllRows()
+                    : userRepository.streamRowsInBranch(inBranch)) {
+                groupRows(rows, consumer);
+            }
+        });
+    }
+
     /**
      * Создает нового пользователя с заданными параметрами и возвращает его в виде DTO.
      *
@@ -56,29 +192,61 @@ public class UserService {
      * @param email email пользователя.
      * @return объект UserDTO, содержащий информацию о созданном пользователе.
      */
+    @Transactional
     public UserDTO createUser(String name, String email) {
         User user = new User();
         user.setName(name);
         user.setEmail(email);
+        user.setBranch(ShardContext.currentBranch());
         User savedUser = userRepository.save(user);
-        return toUserDTO(savedUser);
+        catalogEventService.record(CatalogEvent.Type.USER_CREATED, savedUser.getId(), null);
+        catalogCache.evictUser(savedUser.getId());
+        return UserMapper.toUserDTO(savedUser);
     }
 
     /**
-     * Удаляет пользователя по его ID.
+     * Удаляет пользователя по его ID. Выданные ему книги освобождаются одним UPDATE,
+     * сам пользователь удаляется одним DELETE в той же транзакции; сущности книг не загружаются.
      *
      * @param id идентификатор пользователя, которого нужно удалить.
      * @return true, если пользователь был удален, false, если пользователь не найден.
      */
+    @Transactional
     public boolean deleteUser(Long id) {
-        Optional<User> foundUser = userRepository.findById(id);
+        return deleteUsers(List.of(id), null) == 1;
+    }
 
-        if (foundUser.isPresent()) {
-            userRepository.delete(foundUser.get());
-            return true;
-        } else {
-            return false;
+    /**
+     * Удаляет пользователей без выдач и возвратов с момента before (вместе с освобождением их книг)
+     * порциями по app.users.delete-chunk-size, каждая порция в своей короткой транзакции,
+     * поэтому строки не блокируются надолго. Неактивность перепроверяется под блокировкой:
+     * пользователь, взявший или вернувший книгу во время удаления, остается. Шарды обходятся по очереди.
+     *
+     * @param before момент, с которого пользователь не брал и не возвращал книги;
+     *               не позже, чем app.users.min-inactivity назад.
+     * @return число удаленных пользователей.
+     * @throws BadRequestException если before задан позже допустимого.
+     */
+    public int deleteInactiveUsers(Instant before) {
+        Instant latest = Instant.now().minus(minInactivity);
+        if (before.isAfter(latest)) {
+            throw new BadRequestException("before must not be later than " + latest
+                    + " (users must be inactive for at least " + minInactivity + ")");
         }
+        return catalogShards.sumOverShards(() -> deleteInactiveUsersInShard(before));
+    }
+
+    private int deleteInactiveUsersInShard(Instant before) {
+        int total = 0;
+        DeleteChunk chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = userRepository.findIdsInactiveSince(before, Limit.of(deleteChunkSize));
+                return new DeleteChunk(ids.size(), ids.isEmpty() ? 0 : deleteUsers(ids, before));
+            });
+            total += chunk.deleted();
+        } while (chunk.found() == deleteChunkSize);
+        return total;
     }
 
     /**
@@ -89,6 +257,7 @@ public class UserService {
      * @param email новый email пользователя.
      * @return true, если пользователь был обновлен, false, если пользователь не найден.
      */
+    @Transactional
     public boolean updateUser(Long id, String name, String email) {
         Optional<User> foundUser = userRepository.findById(id);
         if (foundUser.isPresent()) {
@@ -96,6 +265,8 @@ public class UserService {
             user.setName(name);
             user.setEmail(email);
             userRepository.save(user);
+            catalogEventService.record(CatalogEvent.Type.USER_UPDATED, id, null);
+            catalogCache.evictUser(id);
             return true;
         } else {
             return false;
@@ -103,83 +274,262 @@ public class UserService {
     }
 
     /**
-     * Добавляет книгу пользователю.
+     * Добавляет книгу пользователю. Книга выдается атомарным условным UPDATE,
+     * поэтому при одновременных запросах ее получит только один пользователь.
      *
      * @param userId идентификатор пользователя, которому будет добавлена книга.
      * @param bookId идентификатор книги, которую нужно добавить пользователю.
-     * @return true, если книга была успешно добавлена пользователю.
+     * @return true, если книга была успешно добавлена пользователю (или уже была у него).
+     * @throws UserNotFoundException         если пользователь не найден.
+     * @throws BookNotFoundException         если книга не найдена.
+     * @throws BookLendingConflictException если книга уже выдана другому пользователю.
+     * @throws BorrowLimitExceededException  если у пользователя уже максимальное число книг.
      */
+    @Transactional
     public boolean addBookToUser(Long userId, Long bookId) {
-        User user = getUserById(userId);
-        Book book = getBookById(bookId);
+        requireUser(userId);
 
-        book.setUser(user);
-        bookRepository.save(book);
+        if (bookRepository.lendIfAvailable(bookId, userId) == 0) {
+            Long ownerId = getOwnerId(bookId);
+            if (!userId.equals(ownerId)) {
+                throw new BookLendingConflictException("Book with ID " + bookId + " is already lent");
+            }
+            return true;
+        }
 
+        entityCache.evictBook(bookId);
+        entityCache.evictUserBooks(userId);
+        lendingCounters.borrow(userId);
+        lendingCounters.addAvailableForBook(bookId, -1);
+        loanService.lent(bookId, userId);
+        catalogEventService.record(CatalogEvent.Type.BOOK_LENT, bookId, userId);
+        catalogCache.evictBook(bookId);
+        catalogCache.evictUser(userId);
         return true;
     }
 
     /**
-     * Удаляет книгу у пользователя.
+     * Удаляет книгу у пользователя. Проверка владельца и освобождение книги
+     * выполняются одним условным UPDATE.
      *
      * @param userId идентификатор пользователя, у которого нужно удалить книгу.
      * @param bookId идентификатор книги, которую нужно удалить у пользователя.
      * @return true, если книга была успешно удалена у пользователя.
-     * @throws IllegalStateException если книга не принадлежит пользователю.
+     * @throws UserNotFoundException         если пользователь не найден.
+     * @throws BookNotFoundException         если книга не найдена.
+     * @throws BookLendingConflictException если книга не принадлежит пользователю.
      */
+    @Transactional
     public boolean removeBookFromUser(Long userId, Long bookId) {
-        User user = getUserById(userId);
-        Book book = getBookById(bookId);
+        requireUser(userId);
 
-        if (!book.getUser().equals(user)) {
-            throw new IllegalStateException("Book does not belong to the user");
+        if (bookRepository.returnIfLentTo(bookId, userId) == 0) {
+            getOwnerId(bookId);
+            throw new BookLendingConflictException("Book does not belong to the user");
         }
 
-        book.setUser(null);
-        bookRepository.save(book);
-
+        entityCache.evictBook(bookId);
+        entityCache.evictUserBooks(userId);
+        lendingCounters.giveBack(userId);
+        lendingCounters.addAvailableForBook(bookId, 1);
+        loanService.returned(bookId);
+        catalogEventService.record(CatalogEvent.Type.BOOK_RETURNED, bookId, userId);
+        catalogCache.evictBook(bookId);
+        catalogCache.evictUser(userId);
         return true;
     }
 
     /**
-     * Преобразует объект User в объект UserDTO.
+     * Выдает и принимает книги пакетом в одной транзакции. Книги, а затем пользователи загружаются
+     * по одному SELECT ... FOR UPDATE, лимит выдачи проверяется по заблокированным счетчикам,
+     * изменения уходят пакетными UPDATE при коммите.
+     * Операции применяются по порядку, поэтому в одном пакете книгу можно вернуть и выдать снова.
      *
-     * @param user объект User, который нужно преобразовать.
-     * @return объект UserDTO, содержащий информацию о пользователе.
+     * @param operations список операций (userId, bookId, action), не более MAX_LENDING_BATCH.
+     * @return результат по каждой операции в том же порядке: OK, NOT_FOUND или CONFLICT
+     *         (в том числе при превышении лимита выдачи).
+     * @throws BadRequestException если операций больше MAX_LENDING_BATCH или у операции не заполнены поля.
      */
-    private UserDTO toUserDTO(User user) {
+    @Transactional
+    public List<LendingResultDTO> applyLendingBatch(List<LendingOperationDTO> operations) {
+        if (operations.size() > MAX_LENDING_BATCH) {
+            throw new BadRequestException("At most " + MAX_LENDING_BATCH + " operations per batch");
+        }
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> bookIds = new HashSet<>();
+        for (LendingOperationDTO operation : operations) {
+            if (operation.getUserId() == null || operation.getBookId() == null || operation.getAction() == null) {
+                throw new BadRequestException("userId, bookId and action are required for every operation");
+            }
+            userIds.add(operation.getUserId());
+            bookIds.add(operation.getBookId());
+        }
+        Map<Long, Book> books = bookIds.isEmpty() ? Map.of() : bookRepository.findAllForUpdate(bookIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        Map<Long, User> users = userIds.isEmpty() ? Map.of() : userRepository.findAllForUpdate(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        Map<String, LendingCounters.Delta> availability = new HashMap<>();
+        LoanService.Batch loans = loanService.batch();
+        List<LendingResultDTO> results = new ArrayList<>(operations.size());
+        for (LendingOperationDTO operation : operations) {
+            results.add(applyLending(operation, users, books, availability, loans));
+        }
+        lendingCounters.apply(availability);
+        loanService.apply(loans);
+        return results;
+    }
+
+    private LendingResultDTO applyLending(LendingOperationDTO operation, Map<Long, User> users, Map<Long, Book> books,
+                                          Map<String, LendingCounters.Delta> availability, LoanService.Batch loans) {
+        Long userId = operation.getUserId();
+        Long bookId = operation.getBookId();
+        User user = users.get(userId);
         if (user == null) {
-            return null;
+            return lendingResult(operation, LendingResultDTO.Status.NOT_FOUND, "User with ID " + userId + " not found");
         }
-        List<BookDTO> bookDTOs = user.getBooks().stream()
-                .map(book -> new BookDTO(book.getId(), book.getTittle(), book.getAuthor()))
-                .collect(Collectors.toList());
+        Book book = books.get(bookId);
+        if (book == null) {
+            return lendingResult(operation, LendingResultDTO.Status.NOT_FOUND, "Book with ID " + bookId + " not found");
+        }
+        Long ownerId = book.getUser() == null ? null : book.getUser().getId();
 
-        return new UserDTO(user.getId(), user.getName(), user.getEmail(), bookDTOs);
+        if (operation.getAction() == LendingOperationDTO.Action.LEND) {
+            if (ownerId != null) {
+                return userId.equals(ownerId)
+                        ? lendingResult(operation, LendingResultDTO.Status.OK, null)
+                        : lendingResult(operation, LendingResultDTO.Status.CONFLICT, "Book with ID " + bookId + " is already lent");
+            }
+            if (user.getBorrowedCount() >= lendingCounters.maxBorrowed()) {
+                return lendingResult(operation, LendingResultDTO.Status.CONFLICT,
+                        "User already has the maximum of " + lendingCounters.maxBorrowed() + " books");
+            }
+            book.setUser(user);
+            user.setBorrowedCount(user.getBorrowedCount() + 1);
+            user.setLastActiveAt(Instant.now());
+            availability.merge(book.getAuthor(), new LendingCounters.Delta(0, -1), LendingCounters.Delta::plus);
+            loans.lent(bookId, userId);
+            catalogEventService.record(CatalogEvent.Type.BOOK_LENT, bookId, userId);
+        } else {
+            if (!userId.equals(ownerId)) {
+                return lendingResult(operation, LendingResultDTO.Status.CONFLICT, "Book does not belong to the user");
+            }
+            book.setUser(null);
+            user.setBorrowedCount(user.getBorrowedCount() - 1);
+            user.setLastActiveAt(Instant.now());
+            availability.merge(book.getAuthor(), new LendingCounters.Delta(0, 1), LendingCounters.Delta::plus);
+            loans.returned(bookId);
+            catalogEventService.record(CatalogEvent.Type.BOOK_RETURNED, bookId, userId);
+        }
+        catalogCache.evictBook(bookId);
+        catalogCache.evictUser(userId);
+        return lendingResult(operation, LendingResultDTO.Status.OK, null);
     }
 
     /**
-     * Находит пользователя по его ID.
+     * Удаляет пользователей в текущей транзакции. Строки блокируются в общем порядке: сначала книги
+     * пользователей (проекцией, без загрузки сущностей), затем сами пользователи. Книги освобождаются
+     * одним UPDATE, пользователи удаляются одним DELETE, счетчики доступности обновляются по авторам,
+     * выдачи закрываются, по каждой книге и пользователю пишутся события.
+     *
+     * @param ids            ID пользователей-кандидатов.
+     * @param inactiveBefore если не null, удаляются только пользователи с lastActiveAt раньше этого момента.
+     * @return число удаленных пользователей.
+     */
+    private int deleteUsers(Collection<Long> ids, Instant inactiveBefore) {
+        List<BookView> lent = bookRepository.lockLentTo(ids);
+        List<User> users = userRepository.findAllForUpdate(ids).stream()
+                .filter(user -> inactiveBefore == null || user.getLastActiveAt().isBefore(inactiveBefore))
+                .toList();
+        if (users.isEmpty()) {
+            return 0;
+        }
+        Set<Long> userIds = users.stream().map(User::getId).collect(Collectors.toSet());
+        List<BookView> released = lent.stream().filter(book -> userIds.contains(book.getUserId())).toList();
+        if (released.size() != users.stream().mapToInt(User::getBorrowedCount).sum()) {
+            // книга выдана после блокировки книг, но до блокировки пользователя: выдача уже зафиксирована
+            released = bookRepository.lockLentTo(userIds);
+        }
+
+        if (!released.isEmpty()) {
+            bookRepository.releaseAll(released.stream().map(BookView::getId).toList());
+            released.forEach(book -> entityCache.evictBook(book.getId()));
+        }
+        userRepository.deleteAllByIdInBatch(userIds);
+
+        Map<String, LendingCounters.Delta> availability = new HashMap<>();
+        LoanService.Batch loans = loanService.batch();
+        for (BookView book : released) {
+            availability.merge(book.getAuthor(), new LendingCounters.Delta(0, 1), LendingCounters.Delta::plus);
+            loans.returned(book.getId());
+            catalogEventService.record(CatalogEvent.Type.BOOK_RETURNED, book.getId(), book.getUserId());
+            catalogCache.evictBook(book.getId());
+        }
+        lendingCounters.apply(availability);
+        loanService.apply(loans);
+        for (Long userId : userIds) {
+            catalogEventService.record(CatalogEvent.Type.USER_DELETED, userId, null);
+            catalogCache.evictUser(userId);
+        }
+        return users.size();
+    }
+
+    private record DeleteChunk(int found, int deleted) {
+    }
+
+    private LendingResultDTO lendingResult(LendingOperationDTO operation, LendingResultDTO.Status status, String message) {
+        return new LendingResultDTO(operation.getUserId(), operation.getBookId(), operation.getAction(), status, message);
+    }
+
+    /**
+     * Собирает UserDTO из строк JOIN-проекции, упорядоченных по ID пользователя.
+     * Каждый пользователь передается потребителю, как только встречается строка следующего.
+     *
+     * @param rows     строки проекции, отсортированные по userId.
+     * @param consumer обработчик готовых UserDTO.
+     */
+    private void groupRows(Stream<UserBookRow> rows, Consumer<UserDTO> consumer) {
+        UserDTO[] current = new UserDTO[1];
+        rows.forEach(row -> {
+            if (current[0] == null || !current[0].getId().equals(row.getUserId())) {
+                if (current[0] != null) {
+                    consumer.accept(current[0]);
+                }
+                current[0] = new UserDTO(row.getUserId(), row.getName(), row.getEmail(), new ArrayList<>());
+            }
+            if (row.getBookId() != null) {
+                current[0].getBooks().add(new BookDTO(row.getBookId(), row.getTittle(), row.getAuthor()));
+            }
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+
+    /**
+     * Проверяет, что пользователь существует, без загрузки его данных.
      *
      * @param userId идентификатор пользователя.
-     * @return объект User, если пользователь найден.
      * @throws UserNotFoundException если пользователь с данным ID не найден.
      */
-    private User getUserById(Long userId) {
-        return userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException("User with ID " + userId + " not found"));
+    private void requireUser(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException("User with ID " + userId + " not found");
+        }
     }
 
     /**
-     * Находит книгу по ее ID.
+     * Возвращает ID пользователя, которому выдана книга.
      *
      * @param bookId идентификатор книги.
-     * @return объект Book, если книга найдена.
+     * @return ID владельца или null, если книга свободна.
      * @throws BookNotFoundException если книга с данным ID не найдена.
      */
-    private Book getBookById(Long bookId) {
-        return bookRepository.findById(bookId)
-                .orElseThrow(() -> new BookNotFoundException("Book with ID " + bookId + " not found"));
+    private Long getOwnerId(Long bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            throw new BookNotFoundException("Book with ID " + bookId + " not found");
+        }
+        return bookRepository.findOwnerId(bookId).orElse(null);
     }
 
 }
\ No newline at end of file
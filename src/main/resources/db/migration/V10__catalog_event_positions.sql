@@ -0,0 +1,21 @@
+-- Смещения событий outbox в порядке коммита. id выдается последовательностью до коммита, и транзакции
+-- фиксируются не в порядке id; position назначает уже зафиксированным событиям единственный
+-- ретранслятор, поэтому смещение потребителя (position) никогда не перескакивает событие.
+alter table catalog_events add column if not exists position bigint;
+update catalog_events set position = id where position is null;
+
+create unique index if not exists catalog_events_position_idx on catalog_events (position);
+
+-- Еще не опубликованные события: ретранслятор читает только этот маленький частичный индекс.
+create index if not exists catalog_events_unpublished_idx on catalog_events (id) where position is null;
+
+-- Одна строка (id = 1) с последним выданным смещением; ее блокировка упорядочивает ретрансляторы
+-- всех экземпляров приложения.
+create table if not exists catalog_event_relay (
+    id            integer primary key,
+    last_position bigint  not null
+);
+
+insert into catalog_event_relay (id, last_position)
+select 1, coalesce(max(position), 0) from catalog_events
+on conflict (id) do nothing;
@@ -0,0 +1,10 @@
+-- Последовательности users_seq и books_seq появились вместе с пакетными вставками (переход с IDENTITY),
+-- а миграция для них — только в V1. Базы, где их до этого создали вручную, могли получить шаг 1
+-- и значение ниже существующих ID; V1 такие последовательности не трогает (create sequence if not exists).
+-- Здесь шаг выравнивается под pooled-оптимизатор Hibernate (50), а следующий блок ID выносится выше
+-- и уже выданных блоков, и максимального ID. Значение только растет, поэтому начало диапазона
+-- шарда (id-offset) сохраняется.
+alter sequence users_seq increment by 50;
+alter sequence books_seq increment by 50;
+select setval('users_seq', greatest((select last_value from users_seq), coalesce((select max(id) from users), 0)) + 50, false);
+select setval('books_seq', greatest((select last_value from books_seq), coalesce((select max(id) from books), 0)) + 50, false);
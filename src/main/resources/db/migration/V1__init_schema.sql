@@ -0,0 +1,28 @@
+-- Базовая схема каталога. Скрипт идемпотентен, чтобы его можно было применить
+-- к базе, созданной ранее через автогенерацию DDL Hibernate.
+create table if not exists users (
+    id    bigint       primary key,
+    name  varchar(255) not null,
+    email varchar(255) not null
+);
+
+create table if not exists books (
+    id      bigint       primary key,
+    tittle  varchar(255) not null,
+    author  varchar(255) not null,
+    user_id bigint       references users (id)
+);
+
+create index if not exists books_user_id_idx on books (user_id);
+
+-- Идентификаторы выдаются последовательностями с шагом 50 (pooled-оптимизатор Hibernate),
+-- а не IDENTITY-колонками, чтобы вставки можно было объединять в пакеты.
+alter table users alter column id drop identity if exists;
+alter table users alter column id drop default;
+alter table books alter column id drop identity if exists;
+alter table books alter column id drop default;
+
+create sequence if not exists users_seq increment by 50;
+create sequence if not exists books_seq increment by 50;
+select setval('users_seq', coalesce((select max(id) from users), 0) + 50, false);
+select setval('books_seq', coalesce((select max(id) from books), 0) + 50, false);
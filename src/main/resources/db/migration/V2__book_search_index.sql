@@ -0,0 +1,11 @@
+-- Полнотекстовый поиск по названию и автору: поддерживаемая базой tsvector-колонка и GIN-индекс.
+-- Конфигурация 'simple' не применяет стемминг, поэтому одинаково работает для любых языков
+-- и позволяет префиксный поиск (to_tsquery('simple', 'tolk:*')) по индексу.
+alter table books
+    add column if not exists search_vector tsvector
+        generated always as (
+            setweight(to_tsvector('simple', coalesce(tittle, '')), 'A') ||
+            setweight(to_tsvector('simple', coalesce(author, '')), 'B')
+        ) stored;
+
+create index if not exists books_search_vector_idx on books using gin (search_vector);
@@ -0,0 +1,2 @@
+-- Версия строки для оптимистической блокировки (@Version в Book).
+alter table books add column if not exists version bigint not null default 0;
@@ -0,0 +1,7 @@
+-- Email хранится в нижнем регистре (см. User#normalizeEmail), поэтому поиск по нему
+-- разрешается одним проходом по уникальному индексу без lower() в запросе.
+-- Если после приведения к нижнему регистру найдутся дубликаты, миграция остановится:
+-- их нужно разрешить вручную.
+update users set email = lower(trim(email)) where email <> lower(trim(email));
+
+create unique index if not exists users_email_uidx on users (email);
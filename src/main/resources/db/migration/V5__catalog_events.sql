@@ -0,0 +1,13 @@
+-- Outbox изменений каталога: событие пишется в той же транзакции, что и само изменение.
+-- Потребители читают события по возрастанию id, начиная со своего смещения.
+create table if not exists catalog_events (
+    id         bigint      primary key,
+    type       varchar(32) not null,
+    entity_id  bigint      not null,
+    user_id    bigint,
+    created_at timestamptz not null
+);
+
+create index if not exists catalog_events_created_at_idx on catalog_events (created_at);
+
+create sequence if not exists catalog_events_seq increment by 50;
@@ -0,0 +1,26 @@
+-- Счетчики, поддерживаемые при каждой выдаче, возврате, создании и удалении книги,
+-- чтобы отвечать на вопросы "сколько книг у пользователя" и "сколько книг доступно"
+-- без подсчета строк books.
+alter table users add column if not exists borrowed_count integer not null default 0;
+update users u set borrowed_count = (select count(*) from books b where b.user_id = u.id);
+
+create table if not exists author_stats (
+    author    varchar(255) primary key,
+    total     bigint       not null,
+    available bigint       not null
+);
+
+insert into author_stats (author, total, available)
+select author, count(*), count(*) - count(user_id) from books group by author
+on conflict (author) do nothing;
+
+-- Одна строка (id = 1) с итогами по всему каталогу.
+create table if not exists catalog_stats (
+    id        integer primary key,
+    total     bigint  not null,
+    available bigint  not null
+);
+
+insert into catalog_stats (id, total, available)
+select 1, count(*), count(*) - count(user_id) from books
+on conflict (id) do nothing;
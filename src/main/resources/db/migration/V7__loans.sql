@@ -0,0 +1,51 @@
+-- История выдач: строка на каждую выдачу, при возврате заполняется returned_at.
+-- Таблица секционирована по месяцу выдачи: вставка и поиск по открытым выдачам затрагивают
+-- только небольшие частичные индексы секций, а старые месяцы можно отсоединить или удалить целиком
+-- (detach/drop partition) без DELETE по десяткам миллионов строк.
+-- Внешних ключей нет: история переживает удаление книги или пользователя.
+create sequence if not exists loans_seq increment by 50;
+
+create table if not exists loans (
+    id          bigint      not null,
+    book_id     bigint      not null,
+    user_id     bigint      not null,
+    borrowed_at timestamptz not null,
+    due_at      timestamptz not null,
+    returned_at timestamptz,
+    overdue     boolean     not null default false,
+    primary key (id, borrowed_at)
+) partition by range (borrowed_at);
+
+-- Строки вне созданных месяцев; при регулярном создании секций наперед остается пустой.
+create table if not exists loans_default partition of loans default;
+
+-- Открытая выдача книги: закрывается при возврате и удалении книги.
+create index if not exists loans_open_book_idx on loans (book_id) where returned_at is null;
+
+-- Открытые, еще не отмеченные выдачи по сроку возврата: поиск просроченных читает
+-- только диапазон due_at < now() этого индекса, отмеченные и возвращенные выдачи из него выпадают.
+create index if not exists loans_open_due_idx on loans (due_at) where returned_at is null and not overdue;
+
+-- Создает секции loans_YYYY_MM для текущего и months_ahead следующих месяцев (границы по UTC).
+-- Вызывается приложением при старте и раз в сутки, поэтому новые выдачи не попадают в loans_default.
+create or replace function create_loan_partitions(months_ahead integer) returns void as $$
+declare
+    month_start timestamp;
+begin
+    for i in 0..months_ahead loop
+        month_start := date_trunc('month', now() at time zone 'UTC') + make_interval(months => i);
+        execute format('create table if not exists %I partition of loans for values from (%L) to (%L)',
+                       'loans_' || to_char(month_start, 'YYYY_MM'),
+                       month_start at time zone 'UTC',
+                       (month_start + interval '1 month') at time zone 'UTC');
+    end loop;
+end;
+$$ language plpgsql;
+
+select create_loan_partitions(3);
+
+-- Уже выданные книги получают открытые выдачи с момента миграции и стандартным сроком 14 дней.
+insert into loans (id, book_id, user_id, borrowed_at, due_at)
+select nextval('loans_seq'), id, user_id, now(), now() + interval '14 days'
+from books
+where user_id is not null;
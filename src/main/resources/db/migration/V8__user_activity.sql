@@ -0,0 +1,6 @@
+-- Момент последней выдачи или возврата книги пользователем (для новых пользователей — момент создания).
+-- Существующие пользователи считаются активными на момент миграции.
+alter table users add column if not exists last_active_at timestamptz not null default now();
+
+-- Поиск неактивных пользователей: диапазон last_active_at < cutoff в порядке индекса.
+create index if not exists users_last_active_at_idx on users (last_active_at, id);
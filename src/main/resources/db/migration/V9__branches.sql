@@ -0,0 +1,8 @@
+-- Филиал библиотеки у книг и пользователей. Филиалы распределяются по шардам (app.sharding.*),
+-- существующие строки относятся к филиалу по умолчанию, который хранится в основной базе.
+alter table books add column if not exists branch varchar(64) not null default 'main';
+alter table users add column if not exists branch varchar(64) not null default 'main';
+
+-- Страницы одного филиала: keyset-выборка по (branch, id)
+create index if not exists books_branch_id_idx on books (branch, id);
+create index if not exists users_branch_id_idx on users (branch, id);
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.LazyInitializationBeanFactoryPostProcessor;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchedulingConfigTest {
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withInitializer(context -> context.addBeanFactoryPostProcessor(new LazyInitializationBeanFactoryPostProcessor()))
+            .withUserConfiguration(SchedulingConfig.class)
+            .withBean("job", Job.class)
+            .withBean("handler", Handler.class);
+
+    @Test
+    void lazyInitializationDefersOnlyBeansWithoutScheduledJobs() {
+        runner.run(context -> {
+            ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+            assertThat(beanFactory.containsSingleton("job")).isTrue();
+            assertThat(beanFactory.containsSingleton("handler")).isFalse();
+        });
+    }
+
+    static class Job {
+        @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+        public void run() {
+        }
+    }
+
+    static class Handler {
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardingConfigTest {
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+            .withUserConfiguration(ShardingConfig.class, ShardDataSourceConfig.class, ReplicaDataSourceConfig.class)
+            .withPropertyValues(
+                    "spring.datasource.url=jdbc:h2:mem:sharding_config;DB_CLOSE_DELAY=-1",
+                    "spring.flyway.enabled=false",
+                    "app.sharding.enabled=true");
+
+    @Test
+    void shardingStartsWithoutReplica() {
+        runner.run(context -> assertThat(context).hasNotFailed().hasSingleBean(ShardRouter.class)
+                .getBean(DataSource.class).isNotNull());
+    }
+
+    @Test
+    void shardingWithReplicaFailsFast() {
+        runner.withPropertyValues("app.datasource.replica.url=jdbc:h2:mem:sharding_replica")
+                .run(context -> assertThat(context).hasFailed().getFailure()
+                        .hasRootCauseInstanceOf(IllegalStateException.class)
+                        .rootCause().hasMessageContaining("app.datasource.replica.url"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.config;
+
+import com.example.demo.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteThrottlingInterceptorTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Test
+    void tokenBucketRefillsAtConfiguredRate() {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(2, 4, now::get);
+
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(250));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertThat(bucket.tryAcquire()).isZero();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertThat(bucket.available()).isEqualTo(2);
+    }
+
+    @Test
+    void clientLimitRejectsOnlyThatClientAndReadsPass() {
+        WriteThrottlingInterceptor interceptor = interceptor(new WriteThrottlingInterceptor.Settings(
+                2, 0.1, 100, 100, "X-Client-Id", 100, 100, 100));
+
+        assertThat(interceptor.preHandle(write("a"), response, null)).isTrue();
+        assertThat(interceptor.preHandle(write("a"), response, null)).isTrue();
+        assertThatThrownBy(() -> interceptor.preHandle(write("a"), response, null))
+                .isInstanceOfSatisfying(TooManyRequestsException.class, e -> {
+                    assertThat(e.isOverloaded()).isFalse();
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(10);
+                });
+        assertThat(interceptor.preHandle(write("b"), response, null)).isTrue();
+        assertThat(interceptor.preHandle(new MockHttpServletRequest("GET", "/books"), response, null)).isTrue();
+        assertThat(registry.counter("library.ratelimit.rejected", "scope", "client").count()).isEqualTo(1);
+    }
+
+    @Test
+    void writesAreShedWhenTooManyAreInFlight() {
+        WriteThrottlingInterceptor interceptor = interceptor(new WriteThrottlingInterceptor.Settings(
+                100, 100, 100, 100, "", 100, 1, 100));
+        MockHttpServletRequest first = write(null);
+
+        interceptor.preHandle(first, response, null);
+        assertThatThrownBy(() -> interceptor.preHandle(write(null), response, null))
+                .isInstanceOfSatisfying(TooManyRequestsException.class, e -> assertThat(e.isOverloaded()).isTrue());
+
+        interceptor.afterCompletion(first, response, null, null);
+        assertThat(interceptor.preHandle(write(null), response, null)).isTrue();
+    }
+
+    @Test
+    void concurrentWritesNeverExceedInFlightLimit() throws Exception {
+        int maxInFlight = 4;
+        int threads = 32;
+        WriteThrottlingInterceptor interceptor = interceptor(new WriteThrottlingInterceptor.Settings(
+                1000, 1000, 1000, 1000, "", 100, maxInFlight, 100));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 50; round++) {
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<MockHttpServletRequest>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        MockHttpServletRequest request = write(null);
+                        start.await();
+                        try {
+                            interceptor.preHandle(request, response, null);
+                            return request;
+                        } catch (TooManyRequestsException e) {
+                            return null;
+                        }
+                    }));
+                }
+                List<MockHttpServletRequest> admitted = new ArrayList<>();
+                for (Future<MockHttpServletRequest> result : results) {
+                    MockHttpServletRequest request = result.get(10, TimeUnit.SECONDS);
+                    if (request != null) {
+                        admitted.add(request);
+                    }
+                }
+
+                assertThat(admitted).hasSize(maxInFlight);
+                admitted.forEach(request -> interceptor.afterCompletion(request, response, null, null));
+                assertThat(registry.get("library.loadshedding.in_flight").gauge().value()).isZero();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectedWriteReleasesItsInFlightSlot() {
+        WriteThrottlingInterceptor interceptor = interceptor(new WriteThrottlingInterceptor.Settings(
+                1, 0.1, 100, 100, "X-Client-Id", 100, 1, 100));
+
+        MockHttpServletRequest first = write("a");
+        interceptor.preHandle(first, response, null);
+        interceptor.afterCompletion(first, response, null, null);
+        assertThatThrownBy(() -> interceptor.preHandle(write("a"), response, null))
+                .isInstanceOfSatisfying(TooManyRequestsException.class, e -> assertThat(e.isOverloaded()).isFalse());
+
+        assertThat(interceptor.preHandle(write("b"), response, null)).isTrue();
+    }
+
+    private WriteThrottlingInterceptor interceptor(WriteThrottlingInterceptor.Settings settings) {
+        return new WriteThrottlingInterceptor(settings, new DriverManagerDataSource(), registry);
+    }
+
+    private static MockHttpServletRequest write(String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/books");
+        if (client != null) {
+            request.addHeader("X-Client-Id", client);
+        }
+        return request;
+    }
+}
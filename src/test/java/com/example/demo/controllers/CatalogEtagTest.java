@@ -0,0 +1,141 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.models.CatalogEvent;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.CatalogEventRepository;
+import com.example.demo.services.BookService;
+import com.example.demo.services.CatalogCache;
+import com.example.demo.services.CatalogEventService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CatalogEtagTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private CatalogEventService catalogEventService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private CatalogEventRepository catalogEventRepository;
+
+    private BookDTO book;
+
+    @BeforeEach
+    void setUp() {
+        book = bookService.createBook("Before", "Author", null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+        catalogEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void writeInvalidatesEtagOfBookResponse() throws Exception {
+        String etag = mockMvc.perform(get("/books/{id}", book.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+
+        mockMvc.perform(get("/books/{id}", book.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/books/{id}", book.getId()).param("tittle", "After").param("author", "Author"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/books/{id}", book.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tittle").value("After"));
+    }
+
+    @Test
+    void versionChangesOnlyAfterCommit() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        String before = catalogCache.etag();
+
+        transaction.executeWithoutResult(status -> {
+            bookService.updateBook(book.getId(), "Uncommitted", "Author");
+            assertThat(catalogCache.etag()).isEqualTo(before);
+        });
+        String committed = catalogCache.etag();
+        assertThat(committed).isNotEqualTo(before);
+
+        transaction.executeWithoutResult(status -> {
+            bookService.updateBook(book.getId(), "Rolled back", "Author");
+            status.setRollbackOnly();
+        });
+        assertThat(catalogCache.etag()).isEqualTo(committed);
+    }
+
+    @Test
+    void changeByAnotherInstanceEvictsCachedBookBeforeEtagChanges() throws Exception {
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+        String etag = mockMvc.perform(get("/books/{id}", book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tittle").value("Before"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // другой экземпляр: строка и событие меняются в базе, локальные кэши (свой и Hibernate) не трогаются
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("update books set tittle = 'Remote', version = version + 1 where id = ?", book.getId());
+            catalogEventService.record(CatalogEvent.Type.BOOK_UPDATED, book.getId(), null);
+        });
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+
+        mockMvc.perform(get("/books/{id}", book.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tittle").value("Remote"));
+    }
+
+    @Test
+    void etagOfOneBranchDoesNotMatchAnother() throws Exception {
+        String etag = mockMvc.perform(get("/books").header("X-Branch", "north"))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem("X-Branch")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/books").header("X-Branch", "north").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem("X-Branch")));
+        mockMvc.perform(get("/books").header("X-Branch", "south").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/books").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+}
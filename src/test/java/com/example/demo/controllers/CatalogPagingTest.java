@@ -0,0 +1,169 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CatalogPagingTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void pagesContinueAfterCursorAndEndWithoutOne() throws Exception {
+        List<Long> ids = saveBooks(5);
+
+        CursorPageDTO<BookDTO> first = bookPage(null, 2);
+        assertThat(first.getItems()).extracting(BookDTO::getId).containsExactlyElementsOf(ids.subList(0, 2));
+        assertThat(first.getNextCursor()).isEqualTo(ids.get(1));
+
+        CursorPageDTO<BookDTO> second = bookPage(first.getNextCursor(), 2);
+        assertThat(second.getItems()).extracting(BookDTO::getId).containsExactlyElementsOf(ids.subList(2, 4));
+        assertThat(second.getNextCursor()).isEqualTo(ids.get(3));
+
+        CursorPageDTO<BookDTO> last = bookPage(second.getNextCursor(), 2);
+        assertThat(last.getItems()).extracting(BookDTO::getId).containsExactly(ids.get(4));
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    void fullLastPageHasNoCursor() throws Exception {
+        List<Long> ids = saveBooks(4);
+
+        CursorPageDTO<BookDTO> first = bookPage(null, 2);
+        CursorPageDTO<BookDTO> last = bookPage(first.getNextCursor(), 2);
+
+        assertThat(last.getItems()).extracting(BookDTO::getId).containsExactlyElementsOf(ids.subList(2, 4));
+        assertThat(last.getNextCursor()).isNull();
+        assertThat(bookPage(ids.get(3), 2).getItems()).isEmpty();
+    }
+
+    @Test
+    void pageSizeIsClamped() throws Exception {
+        List<Long> ids = saveBooks(CursorPageDTO.MAX_SIZE + 1);
+
+        CursorPageDTO<BookDTO> oversized = bookPage(null, CursorPageDTO.MAX_SIZE * 10);
+        assertThat(oversized.getItems()).hasSize(CursorPageDTO.MAX_SIZE);
+        assertThat(oversized.getNextCursor()).isEqualTo(ids.get(CursorPageDTO.MAX_SIZE - 1));
+
+        assertThat(bookPage(null, 0).getItems()).hasSize(CursorPageDTO.DEFAULT_SIZE);
+        assertThat(bookPage(null, null).getItems()).hasSize(CursorPageDTO.DEFAULT_SIZE);
+    }
+
+    @Test
+    void usersArePagedByCursor() throws Exception {
+        List<Long> ids = saveUsers(3);
+
+        CursorPageDTO<UserDTO> first = page(get("/users").param("size", "2"), new TypeReference<>() {
+        });
+        assertThat(first.getItems()).extracting(UserDTO::getId).containsExactlyElementsOf(ids.subList(0, 2));
+
+        CursorPageDTO<UserDTO> last = page(get("/users").param("after", String.valueOf(first.getNextCursor()))
+                .param("size", "2"), new TypeReference<>() {
+        });
+        assertThat(last.getItems()).extracting(UserDTO::getId).containsExactly(ids.get(2));
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    void ndjsonStreamsEveryRowInIdOrder() throws Exception {
+        List<Long> bookIds = saveBooks(7);
+        List<Long> userIds = saveUsers(3);
+
+        assertThat(streamIds("/books")).containsExactlyElementsOf(bookIds);
+        assertThat(streamIds("/users")).containsExactlyElementsOf(userIds);
+    }
+
+    private CursorPageDTO<BookDTO> bookPage(Long after, Integer size) throws Exception {
+        MockHttpServletRequestBuilder request = get("/books");
+        if (after != null) {
+            request.param("after", after.toString());
+        }
+        if (size != null) {
+            request.param("size", size.toString());
+        }
+        return page(request, new TypeReference<>() {
+        });
+    }
+
+    private <T> CursorPageDTO<T> page(MockHttpServletRequestBuilder request, TypeReference<CursorPageDTO<T>> type)
+            throws Exception {
+        String body = mockMvc.perform(request.accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, type);
+    }
+
+    private List<Long> streamIds(String path) throws Exception {
+        MvcResult started = mockMvc.perform(get(path).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        List<Long> ids = new ArrayList<>();
+        for (String line : body.lines().toList()) {
+            ids.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        return ids;
+    }
+
+    private List<Long> saveBooks(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Book book = new Book();
+            book.setTittle("Book " + i);
+            book.setAuthor("Author");
+            books.add(book);
+        }
+        return bookRepository.saveAll(books).stream().map(Book::getId).sorted().toList();
+    }
+
+    private List<Long> saveUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("paging" + i + "@example.com");
+            users.add(user);
+        }
+        return userRepository.saveAll(users).stream().map(User::getId).sorted().toList();
+    }
+}
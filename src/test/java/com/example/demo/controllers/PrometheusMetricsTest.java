@@ -0,0 +1,71 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.CatalogEventRepository;
+import com.example.demo.services.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет, что вызовы сервисов, Hibernate и пул соединений попадают в /actuator/prometheus.
+ * Без @AutoConfigureObservability тесты подменяют реестр метрик на SimpleMeterRegistry без экспорта.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class PrometheusMetricsTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private CatalogEventRepository catalogEventRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+        catalogEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void scrapeExposesServiceHibernateAndPoolMeters() throws Exception {
+        BookDTO book = bookService.createBook("Metered", "Author", null);
+        bookService.findById(book.getId());
+
+        List<String> series = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()
+                .lines()
+                .filter(line -> !line.startsWith("#"))
+                .toList();
+
+        assertThat(series).anySatisfy(line -> assertThat(line)
+                .startsWith("library_service_seconds_count{")
+                .contains("class=\"com.example.demo.services.BookService\"")
+                .contains("method=\"createBook\""));
+        assertThat(series).anySatisfy(line -> assertThat(line)
+                .startsWith("library_service_seconds_count{")
+                .contains("class=\"com.example.demo.services.BookService\"")
+                .contains("method=\"findById\""));
+        assertThat(series).anySatisfy(line -> assertThat(line).startsWith("hibernate_"));
+        assertThat(series).anySatisfy(line -> assertThat(line).startsWith("hikaricp_connections"));
+    }
+}
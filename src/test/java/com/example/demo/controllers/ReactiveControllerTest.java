@@ -0,0 +1,81 @@
+package com.example.demo.controllers;
+
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.models.Book;
+import com.example.demo.repositories.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReactiveControllerTest {
+    private static final int BOOKS = CursorPageDTO.MAX_SIZE + 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookRepository bookRepository;
+
+    @BeforeEach
+    void setUp() {
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setTittle("Book " + i);
+            book.setAuthor("Author");
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void jsonArrayIsClampedToMaxPageSize() throws Exception {
+        perform(get("/reactive/books").param("limit", String.valueOf(BOOKS)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(CursorPageDTO.MAX_SIZE));
+        perform(get("/reactive/books").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(CursorPageDTO.DEFAULT_SIZE));
+        // без Accept выбирается JSON, поэтому клиент без заголовка тоже получает ограниченный ответ
+        perform(get("/reactive/books"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(CursorPageDTO.DEFAULT_SIZE));
+    }
+
+    @Test
+    void ndjsonStreamsTheWholeCatalog() throws Exception {
+        String body = perform(get("/reactive/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.lines()).hasSize(BOOKS);
+    }
+
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+    }
+}
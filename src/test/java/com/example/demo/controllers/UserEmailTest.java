@@ -0,0 +1,66 @@
+package com.example.demo.controllers;
+
+import com.example.demo.exception.GlobalExceptionHandler;
+import com.example.demo.repositories.CatalogEventRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserEmailTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CatalogEventRepository catalogEventRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAllInBatch();
+        catalogEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void emailLookupIgnoresCaseAndSurroundingSpaces() throws Exception {
+        mockMvc.perform(post("/users").param("name", "Ann").param("email", "Ann.Lee@Example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("ann.lee@example.com"));
+
+        mockMvc.perform(get("/users/by-email").param("email", "  ANN.LEE@example.COM "))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Ann"));
+        mockMvc.perform(get("/users/by-email").param("email", "nobody@example.com"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void duplicateEmailInAnotherCaseIsConflict() throws Exception {
+        mockMvc.perform(post("/users").param("name", "Ann").param("email", "ann@example.com"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/users").param("name", "Other Ann").param("email", "ANN@example.com"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("A user with this email already exists"));
+        assertThat(userRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void otherIntegrityViolationsAreNotReportedAsDuplicateEmail() {
+        assertThat(new GlobalExceptionHandler().handleDataIntegrityViolation(
+                new DataIntegrityViolationException("fk_books_user")))
+                .containsEntry("error", "The request conflicts with existing data");
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.AvailabilityDTO;
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.LendingOperationDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class AvailabilityIndexTest {
+
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private CatalogEventService catalogEventService;
+    @Autowired
+    private CatalogShards catalogShards;
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        // other tests clean tables with bulk deletes that bypass the services
+        availabilityIndex.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void followsBookAndLendingChanges() {
+        UserDTO user = userService.createUser("Reader", "index@example.com");
+        BookDTO first = bookService.createBook("First", "Author A", null);
+        BookDTO second = bookService.createBook("Second", "Author A", user.getId());
+        BookDTO third = bookService.createBook("Third", "Author B", null);
+        catchUp();
+
+        assertThat(availabilityIndex.count(List.of("Author A"))).isEqualTo(new AvailabilityDTO("Author A", 2, 1));
+        assertThat(availabilityIndex.findAvailable(List.of("Author A", "Author B"), null, null).getItems())
+                .containsExactly(first.getId(), third.getId());
+
+        userService.addBookToUser(user.getId(), first.getId());
+        userService.removeBookFromUser(user.getId(), second.getId());
+        bookService.updateBook(third.getId(), "Third", "Author A");
+        bookService.deleteBook(second.getId());
+        catchUp();
+
+        assertThat(availabilityIndex.count(List.of("Author A"))).isEqualTo(new AvailabilityDTO("Author A", 2, 1));
+        assertThat(availabilityIndex.count(List.of("Author B"))).isEqualTo(new AvailabilityDTO("Author B", 0, 0));
+        assertThat(availabilityIndex.findAvailable(List.of(), null, null).getItems()).containsExactly(third.getId());
+
+        userService.applyLendingBatch(List.of(
+                new LendingOperationDTO(user.getId(), first.getId(), LendingOperationDTO.Action.RETURN),
+                new LendingOperationDTO(user.getId(), third.getId(), LendingOperationDTO.Action.LEND)));
+        userService.deleteUser(user.getId());
+        catchUp();
+
+        assertThat(availabilityIndex.count(List.of())).isEqualTo(new AvailabilityDTO(null, 2, 2));
+        assertThat(availabilityIndex.report()).satisfies(report -> {
+            assertThat(report.getBooks()).isEqualTo(2);
+            assertThat(report.getAuthors()).isEqualTo(1);
+            assertThat(report.getSizeInBytes()).isPositive();
+        });
+    }
+
+    @Test
+    void rolledBackChangesDoNotReachIndex() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            bookService.createBook("Lost", "Author", null);
+            status.setRollbackOnly();
+        });
+        BookDTO book = bookService.createBook("Kept", "Author", null);
+        catchUp();
+
+        assertThat(availabilityIndex.count(List.of("Author"))).isEqualTo(new AvailabilityDTO("Author", 1, 1));
+        assertThat(availabilityIndex.findAvailable(List.of("Author"), null, null).getItems())
+                .containsExactly(book.getId());
+    }
+
+    @Test
+    void interleavedCommitsEndInCommittedState() {
+        UserDTO user = userService.createUser("Reader", "interleaved@example.com");
+        BookDTO first = bookService.createBook("First", "Author", null);
+        BookDTO second = bookService.createBook("Second", "Second Author", null);
+        catchUp();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            bookService.updateBook(first.getId(), "First", "Renamed");
+            // транзакции второй книги начинаются позже, но фиксируются и попадают в индекс раньше
+            CompletableFuture.runAsync(() -> {
+                userService.addBookToUser(user.getId(), second.getId());
+                userService.removeBookFromUser(user.getId(), second.getId());
+                userService.addBookToUser(user.getId(), second.getId());
+                catchUp();
+            }).join();
+            assertThat(availabilityIndex.count(List.of("Second Author")))
+                    .isEqualTo(new AvailabilityDTO("Second Author", 1, 0));
+            assertThat(availabilityIndex.count(List.of("Author"))).isEqualTo(new AvailabilityDTO("Author", 1, 1));
+        });
+        catchUp();
+
+        assertThat(availabilityIndex.count(List.of("Author"))).isEqualTo(new AvailabilityDTO("Author", 0, 0));
+        assertThat(availabilityIndex.count(List.of("Renamed"))).isEqualTo(new AvailabilityDTO("Renamed", 1, 1));
+        assertThat(availabilityIndex.findAvailable(List.of(), null, null).getItems()).containsExactly(first.getId());
+    }
+
+    @Test
+    void otherInstanceSeesChangesThroughOutbox() {
+        AvailabilityIndex other = new AvailabilityIndex(dataSource, catalogShards, catalogEventService,
+                transactionManager, new SimpleMeterRegistry(), 100);
+        other.rebuild();
+
+        BookDTO book = bookService.createBook("Elsewhere", "Remote", null);
+        catalogEventService.publish();
+        other.catchUp();
+        assertThat(other.count(List.of("Remote"))).isEqualTo(new AvailabilityDTO("Remote", 1, 1));
+
+        bookService.updateBook(book.getId(), "Elsewhere", "Moved");
+        catalogEventService.publish();
+        other.catchUp();
+        assertThat(other.count(List.of("Remote"))).isEqualTo(new AvailabilityDTO("Remote", 0, 0));
+        assertThat(other.count(List.of("Moved"))).isEqualTo(new AvailabilityDTO("Moved", 1, 1));
+    }
+
+    @Test
+    void pagesAvailableBooksByIdAndRebuildsFromTable() {
+        for (int i = 0; i < 5; i++) {
+            bookService.createBook("Book " + i, i % 2 == 0 ? "Even" : "Odd", null);
+        }
+        List<Long> ids = bookService.findPage(null, null).getItems().stream().map(BookDTO::getId).toList();
+        bookRepository.deleteAllByIdInBatch(List.of(ids.get(4)));
+        catchUp();
+
+        CursorPageDTO<Long> page = availabilityIndex.findAvailable(List.of("Even", "Odd"), null, 2);
+        assertThat(page.getItems()).containsExactly(ids.get(0), ids.get(1));
+        page = availabilityIndex.findAvailable(List.of("Even", "Odd"), page.getNextCursor(), 2);
+        assertThat(page.getItems()).containsExactly(ids.get(2), ids.get(3));
+
+        availabilityIndex.rebuild();
+
+        page = availabilityIndex.findAvailable(List.of("Even"), ids.get(0), 2);
+        assertThat(page.getItems()).containsExactly(ids.get(2));
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(availabilityIndex.report().getBooks()).isEqualTo(4);
+    }
+
+    private void catchUp() {
+        catalogEventService.publish();
+        availabilityIndex.catchUp();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSearchQueryTest {
+
+    @Test
+    void wordsBecomeLowerCasePrefixesJoinedWithAnd() {
+        assertThat(BookService.toTsQuery("War and Peace")).isEqualTo("war:* & and:* & peace:*");
+        assertThat(BookService.toTsQuery("Толстой, Лев")).isEqualTo("толстой:* & лев:*");
+    }
+
+    @Test
+    void tsqueryOperatorsAreTreatedAsSeparators() {
+        assertThat(BookService.toTsQuery("tolk:* | !ring & (lord)")).isEqualTo("tolk:* & ring:* & lord:*");
+        assertThat(BookService.toTsQuery("'; drop table books; --")).isEqualTo("drop:* & table:* & books:*");
+    }
+
+    @Test
+    void shortWordsAreDropped() {
+        assertThat(BookService.toTsQuery("a b c")).isEmpty();
+        assertThat(BookService.toTsQuery("J R R Tolkien")).isEqualTo("tolkien:*");
+        assertThat(BookService.toTsQuery("  ")).isEmpty();
+    }
+
+    @Test
+    void termCountIsLimited() {
+        assertThat(BookService.toTsQuery("aa bb cc dd ee ff gg hh ii jj").split(" & "))
+                .hasSize(8)
+                .endsWith("hh:*");
+    }
+}
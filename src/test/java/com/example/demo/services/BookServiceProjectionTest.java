@@ -0,0 +1,89 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class BookServiceProjectionTest {
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long ownerId;
+    private Long ownedBookId;
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User();
+        owner.setName("owner");
+        owner.setEmail("owner@example.com");
+        ownerId = userRepository.save(owner).getId();
+
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTittle("title" + i);
+            book.setAuthor("author" + i);
+            if (i == 0) {
+                book.setUser(owner);
+            }
+            Long id = bookRepository.save(book).getId();
+            if (i == 0) {
+                ownedBookId = id;
+            }
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void findPageReturnsDtosWithoutLoadingEntities() {
+        CursorPageDTO<BookDTO> page = bookService.findPage(null, 10);
+
+        assertThat(page.getItems()).hasSize(3);
+        assertThat(page.getItems()).filteredOn(book -> book.getId().equals(ownedBookId))
+                .singleElement().extracting(BookDTO::getUserId).isEqualTo(ownerId);
+        assertThat(page.getItems()).filteredOn(book -> book.getUserId() == null).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void streamAllReturnsDtosWithoutLoadingEntities() {
+        List<BookDTO> books = new ArrayList<>();
+        bookService.streamAll(null, books::add);
+
+        assertThat(books).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.config.CacheConfig;
+import com.example.demo.models.CatalogEvent;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.CatalogEventRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class CatalogCacheTest {
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private CatalogEventService catalogEventService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private CatalogEventRepository catalogEventRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityCache entityCache;
+    @Autowired
+    private CatalogShards catalogShards;
+
+    private UserDTO user;
+    private BookDTO book;
+
+    @BeforeEach
+    void setUp() {
+        user = userService.createUser("Reader", "cache@example.com");
+        book = bookService.createBook("Before", "Author", null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+        catalogEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void writesInvalidateCachedBooksAndUsers() {
+        bookService.findById(book.getId());
+        userService.findById(user.getId());
+
+        userService.addBookToUser(user.getId(), book.getId());
+        assertThat(bookService.findById(book.getId()).getUserId()).isEqualTo(user.getId());
+        assertThat(userService.findById(user.getId()).getBooks()).extracting(BookDTO::getId)
+                .containsExactly(book.getId());
+
+        userService.removeBookFromUser(user.getId(), book.getId());
+        assertThat(bookService.findById(book.getId()).getUserId()).isNull();
+        assertThat(userService.findById(user.getId()).getBooks()).isEmpty();
+
+        bookService.updateBook(book.getId(), "After", "Author");
+        userService.updateUser(user.getId(), "Renamed", "cache@example.com");
+        assertThat(bookService.findById(book.getId()).getTittle()).isEqualTo("After");
+        assertThat(userService.findById(user.getId()).getName()).isEqualTo("Renamed");
+
+        userService.deleteUser(user.getId());
+        assertThat(userService.findById(user.getId())).isNull();
+    }
+
+    @Test
+    void entriesAreEvictedOnlyAfterCommit() {
+        bookService.findById(book.getId());
+        Cache books = cacheManager.getCache(CacheConfig.BOOKS);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            bookService.updateBook(book.getId(), "Rolled back", "Author");
+            status.setRollbackOnly();
+        });
+        assertThat(books.get(book.getId())).isNotNull();
+
+        transaction.executeWithoutResult(status -> {
+            bookService.updateBook(book.getId(), "After", "Author");
+            assertThat(books.get(book.getId())).isNotNull();
+        });
+        assertThat(books.get(book.getId())).isNull();
+    }
+
+    @Test
+    void readDuringWriteTransactionDoesNotLeaveStaleEntry() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            bookService.updateBook(book.getId(), "After", "Author");
+            // другой поток читает зафиксированную версию и кладет ее в кэш до коммита
+            String seen = CompletableFuture.supplyAsync(() -> bookService.findById(book.getId()).getTittle()).join();
+            assertThat(seen).isEqualTo("Before");
+        });
+
+        assertThat(bookService.findById(book.getId()).getTittle()).isEqualTo("After");
+    }
+
+    @Test
+    void versionIsBumpedOnlyAfterEntriesAreEvicted() {
+        bookService.findById(book.getId());
+        Cache books = cacheManager.getCache(CacheConfig.BOOKS);
+        String before = catalogCache.etag();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            // выполняется после коммита между удалением записей и увеличением версии
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    assertThat(books.get(book.getId())).isNull();
+                    assertThat(catalogCache.etag()).isEqualTo(before);
+                }
+            });
+            bookService.updateBook(book.getId(), "After", "Author");
+        });
+
+        assertThat(catalogCache.etag()).isNotEqualTo(before);
+        assertThat(bookService.findById(book.getId()).getTittle()).isEqualTo("After");
+    }
+
+    @Test
+    void versionFollowsChangesPublishedByOtherInstances() {
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+        String before = catalogCache.etag();
+
+        // изменение другого экземпляра: событие в outbox без локальной инвалидации
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                catalogEventService.record(CatalogEvent.Type.BOOK_UPDATED, book.getId(), null));
+        catalogCache.refreshPositions();
+        assertThat(catalogCache.etag()).isEqualTo(before);
+
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+        assertThat(catalogCache.etag()).isNotEqualTo(before);
+    }
+
+    @Test
+    void lendingByAnotherInstanceEvictsBookAndBorrower() {
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+        assertThat(bookService.findById(book.getId()).getUserId()).isNull();
+        assertThat(userService.findById(user.getId()).getBooks()).isEmpty();
+
+        // выдача другим экземпляром: строка и событие в базе, локальные кэши не тронуты
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("update books set user_id = ?, version = version + 1 where id = ?",
+                    user.getId(), book.getId());
+            catalogEventService.record(CatalogEvent.Type.BOOK_LENT, book.getId(), user.getId());
+        });
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+
+        assertThat(bookService.findById(book.getId()).getUserId()).isEqualTo(user.getId());
+        assertThat(userService.findById(user.getId()).getBooks()).extracting(BookDTO::getId)
+                .containsExactly(book.getId());
+    }
+
+    @Test
+    void instancesShareEtagOnceLocalChangesArePublished() {
+        // второй экземпляр: своя версия и эпоха, общие база и outbox
+        CatalogCache other = new CatalogCache(cacheManager, entityCache, catalogShards, catalogEventService,
+                transactionManager);
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+        other.refreshPositions();
+        String before = catalogCache.etag();
+        assertThat(other.etag()).isEqualTo(before);
+
+        bookService.updateBook(book.getId(), "After", "Author");
+        String local = catalogCache.etag();
+        assertThat(local).isNotEqualTo(before);
+        catalogCache.refreshPositions();
+        assertThat(catalogCache.etag()).isEqualTo(local);
+
+        catalogEventService.publish();
+        catalogCache.refreshPositions();
+        other.refreshPositions();
+        assertThat(catalogCache.etag()).isNotEqualTo(before).isNotEqualTo(local).isEqualTo(other.etag());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.exception.BookLendingConflictException;
+import com.example.demo.models.CatalogEvent;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class CatalogEventServiceTest {
+    @Autowired
+    private CatalogEventService catalogEventService;
+    @Autowired
+    private CatalogEventStream catalogEventStream;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long offset;
+
+    @BeforeEach
+    void setUp() {
+        catalogEventService.publish();
+        offset = catalogEventService.latestId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void mutationsAreRecordedInCommitOrder() {
+        UserDTO user = userService.createUser("Reader", "events@example.com");
+        BookDTO book = bookService.createBook("Title", "Author", null);
+        userService.addBookToUser(user.getId(), book.getId());
+        userService.removeBookFromUser(user.getId(), book.getId());
+        bookService.updateBook(book.getId(), "New title", "Author");
+        bookService.deleteBook(book.getId());
+        catalogEventService.publish();
+
+        List<CatalogEventDTO> events = catalogEventService.findAfter(offset, null);
+
+        assertThat(events).extracting(CatalogEventDTO::getType).containsExactly(
+                CatalogEvent.Type.USER_CREATED,
+                CatalogEvent.Type.BOOK_CREATED,
+                CatalogEvent.Type.BOOK_LENT,
+                CatalogEvent.Type.BOOK_RETURNED,
+                CatalogEvent.Type.BOOK_UPDATED,
+                CatalogEvent.Type.BOOK_DELETED);
+        assertThat(events.get(2).getEntityId()).isEqualTo(book.getId());
+        assertThat(events.get(2).getUserId()).isEqualTo(user.getId());
+        assertThat(catalogEventService.findAfter(events.get(3).getId(), null)).hasSize(2);
+    }
+
+    @Test
+    void rolledBackMutationRecordsNoEvent() {
+        UserDTO first = userService.createUser("First", "first@example.com");
+        UserDTO second = userService.createUser("Second", "second@example.com");
+        BookDTO book = bookService.createBook("Title", "Author", null);
+        userService.addBookToUser(first.getId(), book.getId());
+        catalogEventService.publish();
+        long beforeConflict = catalogEventService.latestId();
+
+        assertThatThrownBy(() -> userService.removeBookFromUser(second.getId(), book.getId()))
+                .isInstanceOf(BookLendingConflictException.class);
+        catalogEventService.publish();
+
+        assertThat(catalogEventService.findAfter(beforeConflict, null)).isEmpty();
+    }
+
+    @Test
+    void eventOfLongTransactionIsNotSkipped() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<CatalogEventDTO> seen = new ArrayList<>();
+
+        transaction.executeWithoutResult(status -> {
+            // событие долгой транзакции получает меньший id, но фиксируется последним
+            userService.createUser("Long", "long@example.com");
+            CompletableFuture.runAsync(() -> {
+                userService.createUser("Short", "short@example.com");
+                catalogEventService.publish();
+                seen.addAll(catalogEventService.findAfter(offset, null));
+            }).join();
+        });
+        assertThat(seen).hasSize(1);
+
+        catalogEventService.publish();
+        List<CatalogEventDTO> later = catalogEventService.findAfter(seen.get(0).getId(), null);
+
+        assertThat(later).hasSize(1);
+        assertThat(later.get(0).getEntityId()).isLessThan(seen.get(0).getEntityId());
+        assertThat(later.get(0).getId()).isGreaterThan(seen.get(0).getId());
+    }
+
+    @Test
+    void longPollCompletesWhenEventArrives() {
+        DeferredResult<List<CatalogEventDTO>> result = catalogEventStream.poll(offset, null, Duration.ofSeconds(30));
+        assertThat(result.hasResult()).isFalse();
+
+        userService.createUser("Reader", "poll@example.com");
+        catalogEventService.publish();
+        catalogEventStream.dispatch();
+
+        assertThat(result.hasResult()).isTrue();
+        @SuppressWarnings("unchecked")
+        List<CatalogEventDTO> events = (List<CatalogEventDTO>) result.getResult();
+        assertThat(events).extracting(CatalogEventDTO::getType).containsExactly(CatalogEvent.Type.USER_CREATED);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.ExportJobDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.exception.ExportNotFoundException;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class ExportServiceTest {
+
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void exportsBooksWithOwnersToCompressedCsv() throws Exception {
+        UserDTO user = userService.createUser("Reader, Jr.", "export@example.com");
+        BookDTO lent = bookService.createBook("War and \"Peace\"", "Tolstoy", user.getId());
+        BookDTO free = bookService.createBook("Anna Karenina", "Tolstoy", null);
+
+        ExportJobDTO job = exportService.whenFinished(exportService.startBooksExport().getId()).get(5, TimeUnit.SECONDS);
+
+        assertThat(job.getStatus()).isEqualTo(ExportJobDTO.Status.DONE);
+        assertThat(job.getRows()).isEqualTo(2);
+        assertThat(readLines(job.getId())).containsExactly(
+                "book_id,tittle,author,user_id,user_name,user_email",
+                lent.getId() + ",\"War and \"\"Peace\"\"\",Tolstoy," + user.getId() + ",\"Reader, Jr.\",export@example.com",
+                free.getId() + ",Anna Karenina,Tolstoy,,,");
+    }
+
+    @Test
+    void unknownExportIsNotFound() {
+        assertThatThrownBy(() -> exportService.getJob("missing")).isInstanceOf(ExportNotFoundException.class);
+        assertThatThrownBy(() -> exportService.getFile("missing")).isInstanceOf(ExportNotFoundException.class);
+    }
+
+    private List<String> readLines(String id) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(exportService.getFile(id))), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+}
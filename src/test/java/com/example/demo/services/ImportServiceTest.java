@@ -0,0 +1,90 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.ImportResultDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.models.User;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ImportServiceTest {
+    @Autowired
+    private ImportService importService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void importBooksFromJsonReportsRowErrors() throws IOException {
+        User owner = new User();
+        owner.setName("owner");
+        owner.setEmail("owner@example.com");
+        owner = userRepository.save(owner);
+
+        String json = "[" +
+                "{\"tittle\": \"Dune\", \"author\": \"Herbert\"}," +
+                "{\"tittle\": \"\", \"author\": \"Nobody\"}," +
+                "{\"tittle\": \"Emma\", \"author\": \"Austen\", \"userId\": " + owner.getId() + "}," +
+                "{\"tittle\": \"Lost\", \"author\": \"Ghost\", \"userId\": -1}" +
+                "]";
+
+        ImportResultDTO result = importService.importBooks(stream(json), MediaType.APPLICATION_JSON);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ImportResultDTO.RowError::getRow).containsExactly(2L, 4L);
+        assertThat(bookRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void importedLoansEvictCachedOwners() throws IOException {
+        UserDTO owner = userService.createUser("Owner", "cached-owner@example.com");
+        assertThat(userService.findById(owner.getId()).getBooks()).isEmpty();
+
+        String json = "[{\"tittle\": \"Emma\", \"author\": \"Austen\", \"userId\": " + owner.getId() + "}]";
+        assertThat(importService.importBooks(stream(json), MediaType.APPLICATION_JSON).getImported()).isEqualTo(1);
+
+        assertThat(userService.findById(owner.getId()).getBooks()).extracting(BookDTO::getTittle).containsExactly("Emma");
+    }
+
+    @Test
+    void importUsersFromCsvHandlesQuotedValues() throws IOException {
+        String csv = "name,email\n" +
+                "\"Doe, John\",john@example.com\n" +
+                "Jane,not-an-email\n" +
+                "\n" +
+                "Ann,ann@example.com\n";
+
+        ImportResultDTO result = importService.importUsers(stream(csv), ImportService.TEXT_CSV);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ImportResultDTO.RowError::getRow).containsExactly(2L);
+        assertThat(userRepository.findAll()).extracting(User::getName).contains("Doe, John", "Ann");
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
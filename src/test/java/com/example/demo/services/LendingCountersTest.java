@@ -0,0 +1,109 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.AvailabilityDTO;
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.LendingOperationDTO;
+import com.example.demo.DTO.LendingResultDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.exception.BorrowLimitExceededException;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class LendingCountersTest {
+    private static final String AUTHOR = "Counted Author";
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private LendingCounters lendingCounters;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+
+    private AvailabilityDTO catalogBefore;
+
+    @BeforeEach
+    void setUp() {
+        catalogBefore = bookService.availability(null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void countersFollowLendReturnAndDelete() {
+        UserDTO user = userService.createUser("Reader", "counted@example.com");
+        BookDTO first = bookService.createBook("First", AUTHOR, null);
+        BookDTO second = bookService.createBook("Second", AUTHOR, null);
+
+        userService.addBookToUser(user.getId(), first.getId());
+        userService.addBookToUser(user.getId(), first.getId());
+        userService.addBookToUser(user.getId(), second.getId());
+        userService.removeBookFromUser(user.getId(), first.getId());
+        bookService.deleteBook(second.getId());
+
+        assertThat(userService.findBorrowedCount(user.getId()).getBorrowed()).isZero();
+        assertThat(bookService.availability(AUTHOR)).isEqualTo(new AvailabilityDTO(AUTHOR, 1, 1));
+        assertThat(bookService.availability(null)).isEqualTo(
+                new AvailabilityDTO(null, catalogBefore.getTotal() + 1, catalogBefore.getAvailable() + 1));
+    }
+
+    @Test
+    void authorChangeMovesBookBetweenAuthors() {
+        BookDTO book = bookService.createBook("Title", AUTHOR, null);
+
+        bookService.updateBook(book.getId(), "Title", "Other Author");
+
+        assertThat(bookService.availability(AUTHOR)).isEqualTo(new AvailabilityDTO(AUTHOR, 0, 0));
+        assertThat(bookService.availability("Other Author")).isEqualTo(new AvailabilityDTO("Other Author", 1, 1));
+    }
+
+    @Test
+    void lendingStopsAtBorrowLimit() {
+        UserDTO user = userService.createUser("Reader", "limited@example.com");
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i <= lendingCounters.maxBorrowed() + 1; i++) {
+            bookIds.add(bookService.createBook("Book " + i, AUTHOR, null).getId());
+        }
+        for (int i = 0; i < lendingCounters.maxBorrowed(); i++) {
+            userService.addBookToUser(user.getId(), bookIds.get(i));
+        }
+
+        Long overLimit = bookIds.get(lendingCounters.maxBorrowed());
+        assertThatThrownBy(() -> userService.addBookToUser(user.getId(), overLimit))
+                .isInstanceOf(BorrowLimitExceededException.class);
+        assertThat(bookRepository.findOwnerId(overLimit)).isEmpty();
+
+        List<LendingResultDTO> results = userService.applyLendingBatch(List.of(
+                new LendingOperationDTO(user.getId(), overLimit, LendingOperationDTO.Action.LEND),
+                new LendingOperationDTO(user.getId(), bookIds.get(0), LendingOperationDTO.Action.RETURN),
+                new LendingOperationDTO(user.getId(), overLimit, LendingOperationDTO.Action.LEND)));
+
+        assertThat(results).extracting(LendingResultDTO::getStatus).containsExactly(
+                LendingResultDTO.Status.CONFLICT, LendingResultDTO.Status.OK, LendingResultDTO.Status.OK);
+        assertThat(userService.findBorrowedCount(user.getId()).getBorrowed()).isEqualTo(lendingCounters.maxBorrowed());
+        assertThat(bookService.availability(AUTHOR).getAvailable()).isEqualTo(bookIds.size() - lendingCounters.maxBorrowed());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.LendingOperationDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.models.Loan;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class LoanServiceTest {
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+
+    @AfterEach
+    void tearDown() {
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void lendAndReturnWriteHistory() {
+        UserDTO user = userService.createUser("Reader", "loans@example.com");
+        BookDTO book = bookService.createBook("Book", "Author", null);
+
+        userService.addBookToUser(user.getId(), book.getId());
+        userService.removeBookFromUser(user.getId(), book.getId());
+        userService.addBookToUser(user.getId(), book.getId());
+
+        List<Loan> loans = loans();
+        assertThat(loans).hasSize(2).allSatisfy(loan -> {
+            assertThat(loan.getBookId()).isEqualTo(book.getId());
+            assertThat(loan.getUserId()).isEqualTo(user.getId());
+            assertThat(Duration.between(loan.getBorrowedAt(), loan.getDueAt())).isEqualTo(Duration.ofDays(14));
+        });
+        assertThat(loans.get(0).getReturnedAt()).isNotNull();
+        assertThat(loans.get(1).getReturnedAt()).isNull();
+    }
+
+    @Test
+    void bookCreatedForUserOpensLoanAndDeletionClosesIt() {
+        UserDTO user = userService.createUser("Reader", "loans@example.com");
+        BookDTO book = bookService.createBook("Book", "Author", user.getId());
+
+        assertThat(loans()).singleElement().satisfies(loan -> assertThat(loan.getReturnedAt()).isNull());
+
+        bookService.deleteBook(book.getId());
+
+        assertThat(loans()).singleElement().satisfies(loan -> assertThat(loan.getReturnedAt()).isNotNull());
+    }
+
+    @Test
+    void lendingBatchRecordsEveryStepInOrder() {
+        UserDTO first = userService.createUser("First", "first@example.com");
+        UserDTO second = userService.createUser("Second", "second@example.com");
+        BookDTO book = bookService.createBook("Book", "Author", first.getId());
+
+        userService.applyLendingBatch(List.of(
+                new LendingOperationDTO(first.getId(), book.getId(), LendingOperationDTO.Action.RETURN),
+                new LendingOperationDTO(second.getId(), book.getId(), LendingOperationDTO.Action.LEND),
+                new LendingOperationDTO(second.getId(), book.getId(), LendingOperationDTO.Action.RETURN),
+                new LendingOperationDTO(first.getId(), book.getId(), LendingOperationDTO.Action.LEND)));
+
+        List<Loan> loans = loans();
+        assertThat(loans).extracting(Loan::getUserId).containsExactly(first.getId(), second.getId(), first.getId());
+        assertThat(loans).extracting(loan -> loan.getReturnedAt() != null).containsExactly(true, true, false);
+    }
+
+    @Test
+    void flagsOverdueOpenLoansInChunks() {
+        Instant now = Instant.now();
+        List<Loan> overdue = List.of(loan(now.minus(Duration.ofDays(3)), null), loan(now.minus(Duration.ofDays(2)), null),
+                loan(now.minus(Duration.ofDays(1)), null));
+        Loan returned = loan(now.minus(Duration.ofDays(1)), now.minus(Duration.ofDays(2)));
+        Loan notDue = loan(now.plus(Duration.ofDays(1)), null);
+        loanRepository.saveAll(overdue);
+        loanRepository.saveAll(List.of(returned, notDue));
+
+        assertThat(loanService.flagOverdue(now)).isEqualTo(3);
+        assertThat(loanService.flagOverdue(now)).isZero();
+
+        assertThat(loans()).filteredOn(Loan::isOverdue).extracting(Loan::getId)
+                .containsExactlyInAnyOrderElementsOf(overdue.stream().map(Loan::getId).toList());
+    }
+
+    private Loan loan(Instant dueAt, Instant returnedAt) {
+        return new Loan(null, 1L, 1L, dueAt.minus(Duration.ofDays(14)), dueAt, returnedAt, false);
+    }
+
+    private List<Loan> loans() {
+        return loanRepository.findAll().stream().sorted(Comparator.comparing(Loan::getId)).toList();
+    }
+}
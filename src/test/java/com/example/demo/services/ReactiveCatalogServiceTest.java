@@ -0,0 +1,66 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ReactiveCatalogServiceTest {
+
+    @Autowired
+    private ReactiveCatalogService reactiveCatalogService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void streamsBooksWrittenThroughJpaInIdOrder() {
+        UserDTO user = userService.createUser("Reader", "reactive@example.com");
+        BookDTO first = bookService.createBook("First", "Author", user.getId());
+        BookDTO second = bookService.createBook("Second", "Author", null);
+        BookDTO third = bookService.createBook("Third", "Author", null);
+
+        assertThat(reactiveCatalogService.streamBooks(null, null).collectList().block())
+                .containsExactly(first, second, third);
+        assertThat(reactiveCatalogService.streamBooks(first.getId(), 1).collectList().block())
+                .containsExactly(second);
+    }
+
+    @Test
+    void findsUserWithBooks() {
+        UserDTO user = userService.createUser("Reader", "reactive@example.com");
+        UserDTO withoutBooks = userService.createUser("Other", "other@example.com");
+        BookDTO book = bookService.createBook("Lent", "Author", user.getId());
+
+        UserDTO found = reactiveCatalogService.findUser(user.getId()).block();
+
+        assertThat(found.getEmail()).isEqualTo("reactive@example.com");
+        assertThat(found.getBooks()).containsExactly(new BookDTO(book.getId(), "Lent", "Author"));
+        assertThat(reactiveCatalogService.findUser(withoutBooks.getId()).block().getBooks()).isEqualTo(List.of());
+        assertThat(reactiveCatalogService.findUser(-1L).blockOptional()).isEmpty();
+    }
+}
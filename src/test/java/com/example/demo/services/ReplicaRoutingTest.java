@@ -0,0 +1,128 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingTest {
+
+    @Nested
+    @SpringBootTest(properties = "app.datasource.replica.url=jdbc:h2:mem:replica_db;MODE=PostgreSQL;DB_CLOSE_DELAY=-1")
+    class WithReplica {
+        @Autowired
+        private UserService userService;
+        @Autowired
+        private UserRepository userRepository;
+        @Autowired
+        private BookRepository bookRepository;
+        @Autowired
+        @Qualifier("replicaDataSource")
+        private DataSource replicaDataSource;
+        @Autowired
+        @Qualifier("primaryDataSource")
+        private DataSource primaryDataSource;
+
+        private JdbcTemplate replica;
+
+        @BeforeEach
+        void setUp() {
+            replica = new JdbcTemplate(replicaDataSource);
+            replica.execute("create table if not exists users (id bigint primary key, name varchar(255), email varchar(255),"
+                    + " borrowed_count integer not null default 0,"
+                    + " last_active_at timestamp with time zone not null default current_timestamp,"
+                    + " branch varchar(64) not null default 'main')");
+            replica.execute("create table if not exists books (id bigint primary key, tittle varchar(255), author varchar(255),"
+                    + " user_id bigint, version bigint not null default 0, branch varchar(64) not null default 'main')");
+            replica.update("insert into users (id, name, email) values (900001, 'Replica', 'replica@example.com')");
+        }
+
+        @AfterEach
+        void tearDown() {
+            replica.update("delete from users");
+            bookRepository.deleteAllInBatch();
+            userRepository.deleteAllInBatch();
+        }
+
+        @Test
+        void readOnlyTransactionsReadFromReplicaAndWritesGoToPrimary() {
+            UserDTO created = userService.createUser("Primary", "primary@example.com");
+
+            assertThat(userService.findByEmail("replica@example.com").getName()).isEqualTo("Replica");
+            // запись в основную базу на реплике не видна: репликации между двумя H2 нет
+            assertThat(userService.findByEmail("primary@example.com")).isNull();
+            assertThat(new JdbcTemplate(primaryDataSource).queryForObject(
+                    "select count(*) from users where id = ?", Long.class, created.getId())).isEqualTo(1L);
+        }
+
+        @Test
+        void cachedLookupsReadPrimaryRightAfterWrite() {
+            UserDTO created = userService.createUser("Before", "fresh@example.com");
+            // реплика еще не получила обновление
+            replica.update("insert into users (id, name, email) values (?, 'Before', 'stale@example.com')",
+                    created.getId());
+            userService.updateUser(created.getId(), "After", "fresh@example.com");
+
+            // отстающее чтение с реплики не попадает в кэш второго уровня
+            assertThat(userService.findByEmail("stale@example.com").getName()).isEqualTo("Before");
+            assertThat(userService.findById(created.getId()).getName()).isEqualTo("After");
+            assertThat(userService.findById(created.getId()).getName()).isEqualTo("After");
+            // запись, которой нет в основной базе, поиск по ID не находит
+            assertThat(userService.findById(900001L)).isNull();
+        }
+
+        @Test
+        void replicaPoolFailsFastByDefault() throws Exception {
+            assertThat(replicaDataSource.unwrap(HikariDataSource.class).getConnectionTimeout()).isEqualTo(1000);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "app.datasource.replica.url=jdbc:h2:tcp://localhost:1/replica_db",
+            "app.datasource.replica.hikari.connection-timeout=250"
+    })
+    class WithUnavailableReplica {
+        @Autowired
+        private UserService userService;
+        @Autowired
+        private UserRepository userRepository;
+        @Autowired
+        private MeterRegistry registry;
+        @Autowired
+        @Qualifier("replicaDataSource")
+        private DataSource replicaDataSource;
+
+        @AfterEach
+        void tearDown() {
+            userRepository.deleteAllInBatch();
+        }
+
+        @Test
+        void readsFallBackToPrimary() {
+            userService.createUser("Primary", "primary@example.com");
+
+            assertThat(userService.findByEmail("primary@example.com")).isNotNull();
+            assertThat(userService.findAll()).hasSize(1);
+            assertThat(registry.counter("library.datasource.replica.fallback").count()).isGreaterThanOrEqualTo(2);
+        }
+
+        @Test
+        void replicaConnectionTimeoutCanBeOverridden() throws Exception {
+            assertThat(replicaDataSource.unwrap(HikariDataSource.class).getConnectionTimeout()).isEqualTo(250);
+        }
+    }
+}
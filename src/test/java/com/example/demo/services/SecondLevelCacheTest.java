@@ -0,0 +1,163 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.config.CacheConfig;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class SecondLevelCacheTest {
+    private static final String AUTHOR = "Cached Author";
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private UserDTO user;
+    private BookDTO book;
+
+    @BeforeEach
+    void setUp() {
+        user = userService.createUser("Reader", "cached@example.com");
+        book = bookService.createBook("Cached", AUTHOR, null);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void repeatedBookLookupIssuesNoSql() {
+        findBook(book.getId());
+        statistics.clear();
+
+        BookDTO found = findBook(book.getId());
+
+        assertThat(found).isEqualTo(book);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(CacheConfig.BOOK_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedUserLookupWithBooksIssuesNoSql() {
+        userService.addBookToUser(user.getId(), book.getId());
+        findUser(user.getId());
+        statistics.clear();
+
+        UserDTO found = findUser(user.getId());
+
+        assertThat(found.getBooks()).extracting(BookDTO::getId).containsExactly(book.getId());
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(CacheConfig.USER_REGION).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(CacheConfig.USER_BOOKS_REGION).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(CacheConfig.BOOK_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void lendingAndReturnAreVisibleThroughCachedEntities() {
+        findUser(user.getId());
+        findBook(book.getId());
+
+        userService.addBookToUser(user.getId(), book.getId());
+
+        assertThat(findBook(book.getId()).getUserId()).isEqualTo(user.getId());
+        assertThat(findUser(user.getId()).getBooks()).extracting(BookDTO::getId).containsExactly(book.getId());
+
+        userService.removeBookFromUser(user.getId(), book.getId());
+
+        assertThat(findBook(book.getId()).getUserId()).isNull();
+        assertThat(findUser(user.getId()).getBooks()).isEmpty();
+    }
+
+    @Test
+    void lendingKeepsUnrelatedEntriesCached() {
+        UserDTO other = userService.createUser("Other", "other-cached@example.com");
+        BookDTO untouched = bookService.createBook("Untouched", AUTHOR, null);
+        findUser(other.getId());
+        findBook(untouched.getId());
+
+        userService.addBookToUser(user.getId(), book.getId());
+        userService.removeBookFromUser(user.getId(), book.getId());
+        statistics.clear();
+
+        findBook(untouched.getId());
+        findUser(other.getId());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(CacheConfig.BOOK_REGION).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(CacheConfig.USER_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void bookCreatedForUserEvictsCachedCollection() {
+        findUser(user.getId());
+
+        BookDTO lent = bookService.createBook("Lent on create", AUTHOR, user.getId());
+
+        assertThat(findUser(user.getId()).getBooks()).extracting(BookDTO::getId).containsExactly(lent.getId());
+    }
+
+    @Test
+    void deleteDerivesCountersFromDatabaseRowNotCachedEntity() {
+        findBook(book.getId());
+        // выдача другим экземпляром: запись книги в кэше второго уровня осталась свободной
+        jdbcTemplate.update("update books set user_id = ?, version = version + 1 where id = ?",
+                user.getId(), book.getId());
+        jdbcTemplate.update("update users set borrowed_count = borrowed_count + 1 where id = ?", user.getId());
+        jdbcTemplate.update("update author_stats set available = available - 1 where author = ?", AUTHOR);
+        jdbcTemplate.update("update catalog_stats set available = available - 1");
+
+        assertThat(bookService.deleteBook(book.getId())).isTrue();
+
+        assertThat(userService.findBorrowedCount(user.getId()).getBorrowed()).isZero();
+        assertThat(bookService.availability(AUTHOR).getAvailable()).isZero();
+    }
+
+    /**
+     * Поиск книги в обход кэша DTO Spring, чтобы чтение дошло до Hibernate.
+     */
+    private BookDTO findBook(Long id) {
+        cacheManager.getCache(CacheConfig.BOOKS).clear();
+        return bookService.findById(id);
+    }
+
+    /**
+     * Поиск пользователя в обход кэша DTO Spring, чтобы чтение дошло до Hibernate.
+     */
+    private UserDTO findUser(Long id) {
+        cacheManager.getCache(CacheConfig.USERS).clear();
+        return userService.findById(id);
+    }
+}
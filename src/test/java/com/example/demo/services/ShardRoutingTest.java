@@ -0,0 +1,301 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.config.ShardContext;
+import com.example.demo.config.ShardRouter;
+import com.example.demo.config.ShardRoutingDataSource;
+import com.example.demo.models.User;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.CatalogEventRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Три шарда на встроенных H2: основная база (филиал main и все неназначенные), east (филиалы east и north)
+ * и west. Схема шардов копируется из основной базы, созданной Hibernate, и получает свои диапазоны ID.
+ */
+@SpringBootTest(properties = {
+        "app.sharding.enabled=true",
+        "app.sharding.shards.east.url=jdbc:h2:mem:shard_east;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards.east.branches=east,north",
+        "app.sharding.shards.east.id-offset=100000000",
+        "app.sharding.shards.east.r2dbc-url=r2dbc:h2:mem:///shard_east?options=MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards.west.url=jdbc:h2:mem:shard_west;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "app.sharding.shards.west.branches=west",
+        "app.sharding.shards.west.id-offset=200000000",
+        "app.sharding.shards.west.r2dbc-url=r2dbc:h2:mem:///shard_west?options=MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+class ShardRoutingTest {
+    private static final List<String> SEQUENCES = List.of("users_seq", "books_seq", "catalog_events_seq", "loans_seq");
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+    @Autowired
+    private CatalogShards catalogShards;
+    @Autowired
+    private ShardRouter shardRouter;
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private CatalogEventRepository catalogEventRepository;
+    @Autowired
+    private CatalogEventService catalogEventService;
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private ReactiveCatalogService reactiveCatalogService;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TestConfiguration
+    static class ShardSchema {
+        private static final long[] OFFSETS = {100_000_000L, 200_000_000L};
+
+        /**
+         * Копирует схему основной базы в пустые шарды до ApplicationReadyEvent, на котором
+         * индекс доступности читает все шарды.
+         */
+        @EventListener(ContextRefreshedEvent.class)
+        void createShardSchema(ContextRefreshedEvent event) {
+            ShardRoutingDataSource shards = event.getApplicationContext().getBean(ShardRoutingDataSource.class);
+            JdbcTemplate main = new JdbcTemplate(shard(shards, ShardContext.MAIN_SHARD));
+            List<String> script = main.queryForList("script nodata", String.class);
+            String[] names = {"east", "west"};
+            for (int i = 0; i < names.length; i++) {
+                JdbcTemplate shard = new JdbcTemplate(shard(shards, names[i]));
+                if (shard.queryForObject("select count(*) from information_schema.tables where table_name = 'BOOKS'",
+                        Integer.class) > 0) {
+                    continue;
+                }
+                script.stream().filter(sql -> !sql.startsWith("CREATE USER")).forEach(shard::execute);
+                for (String sequence : SEQUENCES) {
+                    // pooled-оптимизатор Hibernate выдает ID блока, заканчивающегося значением последовательности
+                    shard.execute("alter sequence " + sequence + " restart with " + (OFFSETS[i] + 50));
+                }
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogShards.forEachShard(() -> {
+            loanRepository.deleteAllInBatch();
+            bookRepository.deleteAllInBatch();
+            userRepository.deleteAllInBatch();
+            authorStatsRepository.deleteAllInBatch();
+            catalogEventRepository.deleteAllInBatch();
+        });
+    }
+
+    @Test
+    void branchCallsGoToTheBranchShard() {
+        UserDTO reader = inBranch("north", () -> userService.createUser("Reader", "north@example.com"));
+        BookDTO book = inBranch("north", () -> bookService.createBook("Book", "Author", null));
+        inBranch("north", () -> userService.addBookToUser(reader.getId(), book.getId()));
+
+        JdbcTemplate east = new JdbcTemplate(shard(shardRoutingDataSource, "east"));
+        assertThat(east.queryForObject("select branch from books where id = ?", String.class, book.getId()))
+                .isEqualTo("north");
+        assertThat(east.queryForObject("select user_id from books where id = ?", Long.class, book.getId()))
+                .isEqualTo(reader.getId());
+        assertThat(east.queryForObject("select count(*) from loans where book_id = ?", Long.class, book.getId()))
+                .isEqualTo(1L);
+        assertThat(new JdbcTemplate(shard(shardRoutingDataSource, ShardContext.MAIN_SHARD))
+                .queryForObject("select count(*) from books where id = ?", Long.class, book.getId())).isZero();
+        assertThat(inBranch("east", () -> userService.findById(reader.getId()).getBooks()))
+                .extracting(BookDTO::getId).containsExactly(book.getId());
+    }
+
+    @Test
+    void readsByIdFindTheRecordWhateverTheBranchAndCacheState() {
+        UserDTO reader = inBranch("north", () -> userService.createUser("Reader", "by-id@example.com"));
+        BookDTO book = inBranch("north", () -> bookService.createBook("Book", "Author", null));
+
+        for (String branch : List.of("north", "west", "main")) {
+            cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+            assertThat(inBranch(branch, () -> bookService.findById(book.getId())).getTittle()).isEqualTo("Book");
+            assertThat(inBranch(branch, () -> userService.findById(reader.getId())).getName()).isEqualTo("Reader");
+        }
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        assertThat(bookService.findById(book.getId())).isNotNull();
+        assertThat(userService.findById(reader.getId())).isNotNull();
+    }
+
+    @Test
+    void crossBranchPagesMergeAllShardsById() {
+        List<Long> ids = new ArrayList<>();
+        for (String branch : List.of("main", "east", "west", "north", "south")) {
+            for (int i = 0; i < 2; i++) {
+                ids.add(inBranch(branch, () -> bookService.createBook(branch + " book", "Author", null)).getId());
+            }
+        }
+        ids.sort(null);
+        assertThat(ids).doesNotHaveDuplicates();
+
+        List<Long> paged = new ArrayList<>();
+        CursorPageDTO<BookDTO> page = bookService.findPage(null, 3);
+        paged.addAll(page.getItems().stream().map(BookDTO::getId).toList());
+        while (page.getNextCursor() != null) {
+            page = bookService.findPage(page.getNextCursor(), 3);
+            paged.addAll(page.getItems().stream().map(BookDTO::getId).toList());
+        }
+
+        assertThat(paged).containsExactlyElementsOf(ids);
+        assertThat(inBranch("north", () -> bookService.findPage(null, null)).getItems())
+                .extracting(BookDTO::getTittle).containsOnly("north book").hasSize(2);
+        assertThat(inBranch("south", () -> bookService.findPage(null, null)).getItems())
+                .extracting(BookDTO::getTittle).containsOnly("south book").hasSize(2);
+    }
+
+    @Test
+    void maintenanceCoversEveryShard() {
+        Instant longAgo = Instant.now().minus(Duration.ofDays(400));
+        for (String branch : List.of("main", "east", "west")) {
+            inBranch(branch, () -> {
+                User user = userRepository.findById(userService.createUser(branch, branch + "@example.com").getId())
+                        .orElseThrow();
+                user.setLastActiveAt(longAgo);
+                return userRepository.save(user);
+            });
+            inBranch(branch, () -> bookService.createBook(branch + " book", "Author", null));
+        }
+
+        assertThat(shardRouter.shards()).containsExactly("main", "east", "west");
+        assertThat(userService.findPage(null, null).getItems()).extracting(UserDTO::getName)
+                .containsExactly("main", "east", "west");
+        availabilityIndex.rebuild();
+        assertThat(availabilityIndex.count(List.of("Author")).getAvailable()).isEqualTo(3);
+        assertThat(userService.deleteInactiveUsers(Instant.now().minus(Duration.ofDays(365)))).isEqualTo(3);
+    }
+
+    @Test
+    void eventsAreReadFromTheBranchShard() {
+        catalogEventService.publish();
+        long mainOffset = catalogEventService.latestId();
+        long eastOffset = inBranch("east", catalogEventService::latestId);
+
+        UserDTO reader = inBranch("north", () -> userService.createUser("Reader", "events-north@example.com"));
+        catalogEventService.publish();
+
+        assertThat(inBranch("north", () -> catalogEventService.findAfter(eastOffset, null)))
+                .extracting(CatalogEventDTO::getEntityId).containsExactly(reader.getId());
+        assertThat(catalogEventService.findAfter(mainOffset, null)).isEmpty();
+    }
+
+    @Test
+    void exportsAndReactiveStreamCoverBranchOrAllShards() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (String branch : List.of("west", "main", "north")) {
+            ids.add(inBranch(branch, () -> bookService.createBook(branch + " book", "Author", null)).getId());
+        }
+        ids.sort(null);
+
+        assertThat(reactiveCatalogService.streamBooks(null, null).collectList().block())
+                .extracting(BookDTO::getId).containsExactlyElementsOf(ids);
+        assertThat(inBranch("north", () -> reactiveCatalogService.streamBooks(null, null).collectList().block()))
+                .extracting(BookDTO::getTittle).containsExactly("north book");
+
+        String allExport = exportService.startBooksExport().getId();
+        assertThat(exportService.whenFinished(allExport).get(5, TimeUnit.SECONDS).getRows()).isEqualTo(3);
+        String branchExport = inBranch("north", () -> exportService.startBooksExport().getId());
+        assertThat(exportService.whenFinished(branchExport).get(5, TimeUnit.SECONDS).getRows()).isEqualTo(1);
+    }
+
+    @Test
+    void ndjsonStreamsCoverBranchOrAllShards() throws Exception {
+        List<Long> bookIds = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        for (String branch : List.of("west", "main", "north")) {
+            bookIds.add(inBranch(branch, () -> bookService.createBook(branch + " book", "Author", null)).getId());
+            userIds.add(inBranch(branch, () -> userService.createUser(branch, "ndjson-" + branch + "@example.com"))
+                    .getId());
+        }
+
+        assertThat(streamIds(get("/books"))).containsExactlyInAnyOrderElementsOf(bookIds);
+        assertThat(streamIds(get("/users"))).containsExactlyInAnyOrderElementsOf(userIds);
+        assertThat(streamIds(get("/books").header("X-Branch", "north"))).containsExactly(bookIds.get(2));
+        assertThat(streamIds(get("/users").header("X-Branch", "west"))).containsExactly(userIds.get(0));
+        assertThat(streamIds(get("/books").header("X-Branch", "east"))).isEmpty();
+    }
+
+    @Test
+    void branchHeaderIsValidatedOnEveryCatalogApi() throws Exception {
+        for (String path : List.of("/books", "/users", "/events", "/exports/missing", "/reactive/books")) {
+            mockMvc.perform(get(path).header("X-Branch", "no spaces")).andExpect(status().isBadRequest());
+        }
+    }
+
+    private List<Long> streamIds(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult started = mockMvc.perform(request.accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started)).andReturn().getResponse().getContentAsString();
+        List<Long> ids = new ArrayList<>();
+        for (String line : body.lines().toList()) {
+            ids.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        return ids;
+    }
+
+    private <T> T inBranch(String branch, Supplier<T> action) {
+        ShardContext.Binding previous = ShardContext.bind(branch, shardRouter.shardOf(branch));
+        try {
+            return action.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    private static DataSource shard(ShardRoutingDataSource shards, String name) {
+        return shards.getResolvedDataSources().get(name);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.BookDTO;
+import com.example.demo.DTO.CatalogEventDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.models.CatalogEvent;
+import com.example.demo.models.User;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class UserDeletionTest {
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private CatalogEventService catalogEventService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void deletingBorrowerReleasesBooksWithoutLoadingThem() {
+        UserDTO user = userService.createUser("Reader", "delete@example.com");
+        BookDTO first = bookService.createBook("First", "Author A", user.getId());
+        BookDTO second = bookService.createBook("Second", "Author B", user.getId());
+        catalogEventService.publish();
+        long offset = catalogEventService.latestId();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertThat(userService.deleteUser(user.getId())).isTrue();
+
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+        assertThat(userService.findById(user.getId())).isNull();
+        assertThat(bookService.findById(first.getId()).getUserId()).isNull();
+        assertThat(bookService.findById(second.getId()).getUserId()).isNull();
+        assertThat(bookService.availability("Author A").getAvailable()).isEqualTo(1);
+        assertThat(bookService.availability("Author B").getAvailable()).isEqualTo(1);
+        assertThat(loanRepository.findAll()).filteredOn(loan -> loan.getUserId().equals(user.getId()))
+                .hasSize(2).allSatisfy(loan -> assertThat(loan.getReturnedAt()).isNotNull());
+        catalogEventService.publish();
+        assertThat(catalogEventService.findAfter(offset, null)).extracting(CatalogEventDTO::getType).containsExactly(
+                CatalogEvent.Type.BOOK_RETURNED, CatalogEvent.Type.BOOK_RETURNED, CatalogEvent.Type.USER_DELETED);
+    }
+
+    @Test
+    void deletingUnknownUserChangesNothing() {
+        assertThat(userService.deleteUser(-1L)).isFalse();
+    }
+
+    @Test
+    void rejectsCutoffInsideMinimumInactivity() {
+        UserDTO recent = userService.createUser("Recent", "recent@example.com");
+
+        assertThatThrownBy(() -> userService.deleteInactiveUsers(Instant.now().minus(Duration.ofDays(1))))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(userRepository.existsById(recent.getId())).isTrue();
+    }
+
+    @Test
+    void deletesInactiveUsersInChunks() {
+        Instant longAgo = Instant.now().minus(Duration.ofDays(400));
+        List<User> inactive = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            inactive.add(user("inactive" + i, longAgo));
+        }
+        userRepository.saveAll(inactive);
+        User returning = userRepository.save(user("returning", longAgo));
+        UserDTO recent = userService.createUser("Recent", "recent@example.com");
+        BookDTO held = bookService.createBook("Held", "Author", inactive.get(0).getId());
+        User holder = userRepository.findById(inactive.get(0).getId()).orElseThrow();
+        holder.setLastActiveAt(longAgo);
+        userRepository.save(holder);
+        BookDTO borrowed = bookService.createBook("Borrowed", "Author", null);
+        userService.addBookToUser(returning.getId(), borrowed.getId());
+
+        int deleted = userService.deleteInactiveUsers(Instant.now().minus(Duration.ofDays(365)));
+
+        assertThat(deleted).isEqualTo(5);
+        assertThat(userRepository.findAll()).extracting(User::getId)
+                .containsExactlyInAnyOrder(returning.getId(), recent.getId());
+        assertThat(bookService.findById(held.getId()).getUserId()).isNull();
+        assertThat(bookService.findById(borrowed.getId()).getUserId()).isEqualTo(returning.getId());
+        assertThat(bookService.availability("Author").getAvailable()).isEqualTo(1);
+        assertThat(loanRepository.findAll()).filteredOn(loan -> loan.getBookId().equals(held.getId()))
+                .singleElement().satisfies(loan -> assertThat(loan.getReturnedAt()).isNotNull());
+        assertThat(loanRepository.findAll()).filteredOn(loan -> loan.getBookId().equals(borrowed.getId()))
+                .singleElement().satisfies(loan -> assertThat(loan.getReturnedAt()).isNull());
+    }
+
+    private User user(String name, Instant lastActiveAt) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setLastActiveAt(lastActiveAt);
+        return user;
+    }
+}
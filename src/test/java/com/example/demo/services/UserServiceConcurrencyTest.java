@@ -0,0 +1,120 @@
+package com.example.demo.services;
+
+import com.example.demo.exception.BookLendingConflictException;
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.CatalogEventRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class UserServiceConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private CatalogEventRepository catalogEventRepository;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < THREADS; i++) {
+            User user = new User();
+            user.setName("reader" + i);
+            user.setEmail("reader" + i + "@example.com");
+            userIds.add(userRepository.save(user).getId());
+        }
+        Book book = new Book();
+        book.setTittle("Contended");
+        book.setAuthor("Author");
+        bookId = bookRepository.save(book).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+        catalogEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void onlyOneConcurrentCheckoutSucceeds() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger successes = new AtomicInteger();
+                AtomicInteger conflicts = new AtomicInteger();
+                List<Future<?>> futures = new ArrayList<>();
+                for (Long userId : userIds) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            userService.addBookToUser(userId, bookId);
+                            successes.incrementAndGet();
+                        } catch (BookLendingConflictException e) {
+                            conflicts.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+
+                assertThat(successes.get()).isEqualTo(1);
+                assertThat(conflicts.get()).isEqualTo(THREADS - 1);
+
+                Long ownerId = bookRepository.findOwnerId(bookId).orElseThrow();
+                assertThat(userIds).contains(ownerId);
+                assertThat(userService.removeBookFromUser(ownerId, bookId)).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(bookRepository.findById(bookId).orElseThrow().getVersion()).isEqualTo(2L * ROUNDS);
+    }
+
+    @Test
+    void returningBookOfAnotherUserIsRejected() {
+        userService.addBookToUser(userIds.get(0), bookId);
+
+        assertThatThrownBy(() -> userService.removeBookFromUser(userIds.get(1), bookId))
+                .isInstanceOf(BookLendingConflictException.class);
+        assertThat(bookRepository.findOwnerId(bookId)).contains(userIds.get(0));
+    }
+}
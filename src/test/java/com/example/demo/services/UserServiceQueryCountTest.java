@@ -0,0 +1,138 @@
+package com.example.demo.services;
+
+import com.example.demo.DTO.CursorPageDTO;
+import com.example.demo.DTO.LendingOperationDTO;
+import com.example.demo.DTO.LendingResultDTO;
+import com.example.demo.DTO.UserDTO;
+import com.example.demo.models.Book;
+import com.example.demo.models.User;
+import com.example.demo.repositories.AuthorStatsRepository;
+import com.example.demo.repositories.BookRepository;
+import com.example.demo.repositories.CatalogEventRepository;
+import com.example.demo.repositories.LoanRepository;
+import com.example.demo.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class UserServiceQueryCountTest {
+    private static final int USERS = 20;
+    private static final int BOOKS_PER_USER = 3;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private AuthorStatsRepository authorStatsRepository;
+    @Autowired
+    private CatalogEventRepository catalogEventRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setName("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            userIds.add(userRepository.save(user).getId());
+            for (int j = 0; j < BOOKS_PER_USER; j++) {
+                Book book = new Book();
+                book.setTittle("title" + i + "-" + j);
+                book.setAuthor("author" + j);
+                book.setUser(user);
+                books.add(book);
+            }
+        }
+        bookRepository.saveAll(books);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        authorStatsRepository.deleteAllInBatch();
+        catalogEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void findAllUsesSingleQuery() {
+        List<UserDTO> users = userService.findAll();
+
+        assertThat(users).hasSize(USERS);
+        assertThat(users).allSatisfy(user -> assertThat(user.getBooks()).hasSize(BOOKS_PER_USER));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findPageUsesConstantNumberOfQueries() {
+        CursorPageDTO<UserDTO> page = userService.findPage(null, USERS);
+
+        assertThat(page.getItems()).hasSize(USERS);
+        assertThat(page.getItems()).allSatisfy(user -> assertThat(user.getBooks()).hasSize(BOOKS_PER_USER));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void streamAllUsesSingleQuery() {
+        List<UserDTO> users = new ArrayList<>();
+        userService.streamAll(null, users::add);
+
+        assertThat(users).hasSize(USERS);
+        assertThat(users).allSatisfy(user -> assertThat(user.getBooks()).hasSize(BOOKS_PER_USER));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void lendingBatchUsesConstantNumberOfStatements() {
+        Long from = userIds.get(0);
+        Long to = userIds.get(1);
+        List<Long> bookIds = userService.findById(from).getBooks().stream().map(book -> book.getId()).toList();
+        statistics.clear();
+
+        List<LendingOperationDTO> operations = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            operations.add(new LendingOperationDTO(from, bookId, LendingOperationDTO.Action.RETURN));
+            operations.add(new LendingOperationDTO(to, bookId, LendingOperationDTO.Action.LEND));
+        }
+        operations.add(new LendingOperationDTO(from, bookIds.get(0), LendingOperationDTO.Action.LEND));
+        operations.add(new LendingOperationDTO(from, -1L, LendingOperationDTO.Action.RETURN));
+
+        List<LendingResultDTO> results = userService.applyLendingBatch(operations);
+
+        assertThat(results.subList(0, bookIds.size() * 2))
+                .allSatisfy(result -> assertThat(result.getStatus()).isEqualTo(LendingResultDTO.Status.OK));
+        assertThat(results.get(bookIds.size() * 2).getStatus()).isEqualTo(LendingResultDTO.Status.CONFLICT);
+        assertThat(results.get(bookIds.size() * 2 + 1).getStatus()).isEqualTo(LendingResultDTO.Status.NOT_FOUND);
+        // SELECT ... FOR UPDATE книг и пользователей, пакетные UPDATE книг и пользователей, пакетный INSERT событий,
+        // один UPDATE закрытия выдач, пакетный INSERT новых выдач и, если пулы исчерпаны, выборка следующих блоков
+        // последовательностей событий и выдач; доступность по авторам не меняется, поэтому счетчики авторов не обновляются
+        assertThat(statistics.getPrepareStatementCount()).isBetween(7L, 9L);
+        assertThat(userService.findById(to).getBooks()).hasSize(BOOKS_PER_USER * 2);
+        assertThat(userService.findById(from).getBooks()).isEmpty();
+    }
+}